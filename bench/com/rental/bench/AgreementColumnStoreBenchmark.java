@@ -0,0 +1,73 @@
+package com.rental.bench;
+
+import com.rental.AgreementColumnStore;
+import com.rental.RentalAgreementFactory;
+import com.rental.objects.RentalAgreement;
+import com.rental.util.Constants;
+import com.rental.util.DateConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures revenue reports over ten million agreements checked out in date
+ * order across ten years, for the whole period and for a single month (where
+ * block skipping avoids scanning almost every row)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=1g")
+@State(Scope.Benchmark)
+public class AgreementColumnStoreBenchmark {
+    private static final int AGREEMENTS = 10_000_000;
+    private static final String[] TOOL_CODES = {Constants.LADW, Constants.CHNS,
+                                                Constants.JAKR, Constants.JAKD};
+
+    private AgreementColumnStore store;
+    private int firstDay;
+    private int lastDay;
+
+    @Setup
+    public void setup() {
+        RentalAgreementFactory factory = new RentalAgreementFactory();
+        store = new AgreementColumnStore(AGREEMENTS);
+        firstDay = DateConverter.toEpochDay(2015, 1, 1);
+        lastDay = DateConverter.toEpochDay(2024, 12, 31);
+        int days = lastDay - firstDay + 1;
+        // One agreement per tool and day, reused for every agreement added that day
+        RentalAgreement[] agreements = new RentalAgreement[days * TOOL_CODES.length];
+        for (int day = 0; day < days; day++) {
+            String date = DateConverter.formatDate(firstDay + day);
+            for (int tool = 0; tool < TOOL_CODES.length; tool++) {
+                agreements[day * TOOL_CODES.length + tool] = factory.createRentalAgreement(
+                        TOOL_CODES[tool], date, String.valueOf(2 + (day + tool) % 10), "10%");
+            }
+        }
+        for (int i = 0; i < AGREEMENTS; i++) {
+            long index = (long) i * agreements.length / AGREEMENTS;
+            store.add(agreements[(int) index]);
+        }
+    }
+
+    @Benchmark
+    public AgreementColumnStore.Report wholePeriod() {
+        return store.report(firstDay, lastDay);
+    }
+
+    @Benchmark
+    public AgreementColumnStore.Report singleMonth() {
+        return store.report(DateConverter.toEpochDay(2020, 7, 1),
+                            DateConverter.toEpochDay(2020, 7, 31));
+    }
+}
@@ -0,0 +1,60 @@
+package com.rental.bench;
+
+import com.rental.AgreementJournal;
+import com.rental.RentalAgreementFactory;
+import com.rental.objects.RentalAgreement;
+import com.rental.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures durable appends to the agreement journal from many threads at once.
+ * With group commit, throughput should grow with the thread count (run with
+ * -t 1 and -t 8 to compare) while a single thread is bound by fsync latency.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class AgreementJournalBenchmark {
+    private Path file;
+    private AgreementJournal journal;
+    private RentalAgreement agreement;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("agreements", ".journal");
+        journal = new AgreementJournal(file);
+        agreement = new RentalAgreementFactory().createRentalAgreement(
+                Constants.LADW, "7/2/20", "3", "10%");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        journal.append(agreement);
+    }
+}
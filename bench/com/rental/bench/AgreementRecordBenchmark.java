@@ -0,0 +1,69 @@
+package com.rental.bench;
+
+import com.rental.RentalAgreementFactory;
+import com.rental.objects.AgreementRecord;
+import com.rental.objects.RentalAgreement;
+import com.rental.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing an agreement as a binary record against rendering its text
+ * receipt, and reading a field back from a record in place
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AgreementRecordBenchmark {
+    private static final int RECORDS = 1024;
+
+    private RentalAgreement agreement;
+    private ByteBuffer buffer;
+    private AgreementRecord record;
+    private int next;
+
+    @Setup
+    public void setup() {
+        agreement = new RentalAgreementFactory().createRentalAgreement(
+                Constants.LADW, "7/2/20", "3", "10%");
+        buffer = ByteBuffer.allocateDirect(RECORDS * AgreementRecord.SIZE);
+        record = new AgreementRecord();
+        for (int i = 0; i < RECORDS; i++) {
+            record.wrap(buffer, i * AgreementRecord.SIZE).set(agreement);
+        }
+    }
+
+    private int nextOffset() {
+        next = (next + 1) & (RECORDS - 1);
+        return next * AgreementRecord.SIZE;
+    }
+
+    @Benchmark
+    public AgreementRecord encode() {
+        return record.wrap(buffer, nextOffset()).set(agreement);
+    }
+
+    @Benchmark
+    public long readFinalCharge() {
+        return record.wrap(buffer, nextOffset()).getFinalChargeCents();
+    }
+
+    @Benchmark
+    public String renderText() {
+        return agreement.toString();
+    }
+}
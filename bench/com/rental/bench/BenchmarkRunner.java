@@ -0,0 +1,31 @@
+package com.rental.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the pricing benchmarks. Runs every benchmark in this package
+ * (or only those matching the regular expression given as the first argument)
+ * with the GC profiler attached, so each result also reports the bytes
+ * allocated per operation.
+ *
+ * The benchmarks are kept out of the main source tree so the tool rental
+ * classes never depend on JMH. bench/pom.xml compiles them together with the
+ * classes under src into a single jar whose main class is this one:
+ * <pre>
+ *   mvn -f bench/pom.xml package
+ *   java -jar bench/target/benchmarks.jar [regex]
+ * </pre>
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
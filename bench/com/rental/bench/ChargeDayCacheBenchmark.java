@@ -0,0 +1,68 @@
+package com.rental.bench;
+
+import com.rental.objects.ToolType;
+import com.rental.util.ChargeDayCalculator;
+import com.rental.util.DateConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares counting charge days with and without the charge day cache, over a
+ * small set of popular rental periods (the case the cache is meant for)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChargeDayCacheBenchmark {
+    private static final int PERIODS = 64;
+
+    @Param({"0", "4096"})
+    public int cacheSize;
+
+    private final int[] checkoutDays = new int[PERIODS];
+    private final int[] rentalDays = new int[PERIODS];
+
+    @Setup
+    public void setup() {
+        int start = DateConverter.toEpochDay(2020, 7, 2);
+        for (int i = 0; i < PERIODS; i++) {
+            checkoutDays[i] = start + i % 8;
+            rentalDays[i] = 1 + i / 8 * 3;
+        }
+        if (cacheSize > 0) {
+            ChargeDayCalculator.enableCache(cacheSize);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ChargeDayCalculator.disableCache();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public int calculateDaysToCharge(Cursor cursor) {
+        int i = cursor.next++ & (PERIODS - 1);
+        return ChargeDayCalculator.calculateDaysToCharge(checkoutDays[i], rentalDays[i],
+                                                         ToolType.CHAINSAW);
+    }
+}
@@ -0,0 +1,65 @@
+package com.rental.bench;
+
+import com.rental.objects.ToolType;
+import com.rental.util.ChargeDayCalculator;
+import com.rental.util.DateConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures counting the charge days of short, month long and multi-year rentals
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChargeDayCalculatorBenchmark {
+    @Param({"3", "30", "1095"})
+    public int rentalDays;
+
+    private Calendar calendar;
+    private LocalDate localDate;
+    private int checkoutDay;
+
+    @Setup
+    public void setup() {
+        calendar = DateConverter.createCalenderFromString("7/2/20");
+        checkoutDay = DateConverter.toEpochDay(calendar);
+        localDate = DateConverter.toLocalDate(checkoutDay);
+    }
+
+    @Benchmark
+    public ChargeDayCalculator.Days calculateChargeDays() {
+        return ChargeDayCalculator.calculateChargeDays(calendar, rentalDays);
+    }
+
+    @Benchmark
+    public ChargeDayCalculator.Days calculateChargeDaysFromLocalDate() {
+        return ChargeDayCalculator.calculateChargeDays(localDate, rentalDays);
+    }
+
+    @Benchmark
+    public ChargeDayCalculator.Days calculateChargeDaysFromEpochDay() {
+        return ChargeDayCalculator.calculateChargeDays(checkoutDay, rentalDays);
+    }
+
+    @Benchmark
+    public int calculateDaysToCharge() {
+        return ChargeDayCalculator.calculateDaysToCharge(checkoutDay, rentalDays, ToolType.LADDER);
+    }
+}
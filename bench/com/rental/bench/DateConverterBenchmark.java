@@ -0,0 +1,48 @@
+package com.rental.bench;
+
+import com.rental.util.DateConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing a checkout date from its String form
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DateConverterBenchmark {
+    // Mix of one and two digit months and days so branches aren't perfectly predicted
+    private static final String[] DATES = {"7/2/20", "12/30/20", "9/3/15", "2/29/16",
+                                           "1/1/00", "11/15/99", "8/31/14", "6/9/42"};
+
+    private int next;
+
+    @Benchmark
+    public Calendar createCalenderFromString() {
+        return DateConverter.createCalenderFromString(DATES[next++ & (DATES.length - 1)]);
+    }
+
+    @Benchmark
+    public int parseEpochDay() {
+        return DateConverter.parseEpochDay(DATES[next++ & (DATES.length - 1)]);
+    }
+
+    @Benchmark
+    public LocalDate parseLocalDate() {
+        return DateConverter.toLocalDate(DateConverter.parseEpochDay(DATES[next++ & (DATES.length - 1)]));
+    }
+}
@@ -0,0 +1,289 @@
+package com.rental.bench;
+
+import com.rental.RentalAgreementFactory;
+import com.rental.objects.PriceMatrix;
+import com.rental.objects.RentalAgreement;
+import com.rental.objects.ToolType;
+import com.rental.util.ChargeDayCalculator;
+import com.rental.util.Constants;
+import com.rental.util.DateConverter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks the pricing engine against a deliberately simple reference built on
+ * java.time, for every checkout date in a range of years, every rental length
+ * up to a maximum and every tool type, then measures how fast the engine
+ * sweeps the same inputs.
+ *
+ * For each checkout date and tool type the reference walks the rental day by
+ * day, classifying each day with LocalDate and its own holiday rules
+ * (Independence Day observed on the nearest weekday, Labor Day), and the
+ * engine must agree on:
+ *   - parsing the date in each supported form, and formatting it back
+ *   - ChargeDayCalculator's breakdown of days and count of charge days
+ *   - every field of a RentalAgreement quoted through RentalAgreementFactory,
+ *     with BigDecimal money math as the reference
+ *   - every length of a PriceMatrix
+ * Discounts cycle through 0-100% across the sweep. The reference only knows
+ * the default holidays, so run without rental.holidays.file set.
+ *
+ * Usage: [maxDays [fromYear [toYear]]]   (default 60 2000 2099)
+ *
+ * Prints up to 20 mismatches and exits with status 1 if there were any. Like
+ * QuoteServerLoadTest this is run directly rather than through BenchmarkRunner.
+ */
+public class DifferentialSweep {
+    private static final int MAX_REPORTED = 20;
+    private static final String[] TOOL_CODES = new String[ToolType.values().length];
+    private static final DateTimeFormatter SHORT = DateTimeFormatter.ofPattern("M/d/yy");
+    private static final DateTimeFormatter LONG = DateTimeFormatter.ofPattern("M/d/yyyy");
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    static {
+        TOOL_CODES[ToolType.LADDER.ordinal()] = Constants.LADW;
+        TOOL_CODES[ToolType.CHAINSAW.ordinal()] = Constants.CHNS;
+        TOOL_CODES[ToolType.JACKHAMMER.ordinal()] = Constants.JAKR;
+    }
+
+    private final int maxDays;
+    private final LocalDate first;
+    private final LocalDate last;
+    private final Set<LocalDate> holidays = new HashSet<>();
+    private final RentalAgreementFactory factory = new RentalAgreementFactory();
+    private final List<String> mismatches = new ArrayList<>();
+    private long mismatchCount;
+    private long checks;
+
+    DifferentialSweep(int maxDays, int fromYear, int toYear) {
+        this.maxDays = maxDays;
+        first = LocalDate.of(fromYear, 1, 1);
+        last = LocalDate.of(toYear, 12, 31);
+        // Holidays for every year a rental can reach
+        for (int year = fromYear; year <= toYear + maxDays / 365 + 1; year++) {
+            LocalDate independenceDay = LocalDate.of(year, 7, 4);
+            if (independenceDay.getDayOfWeek() == DayOfWeek.SATURDAY) {
+                independenceDay = independenceDay.minusDays(1);
+            }
+            else if (independenceDay.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                independenceDay = independenceDay.plusDays(1);
+            }
+            holidays.add(independenceDay);
+            holidays.add(LocalDate.of(year, 9, 1).with(TemporalAdjusters.firstInMonth(DayOfWeek.MONDAY)));
+        }
+    }
+
+    public static void main(String[] args) {
+        int maxDays = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        int fromYear = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int toYear = args.length > 2 ? Integer.parseInt(args[2]) : 2099;
+        DifferentialSweep sweep = new DifferentialSweep(maxDays, fromYear, toYear);
+
+        long start = System.nanoTime();
+        sweep.verify();
+        System.out.printf("Verified %d checks over %d checkout dates, lengths 1-%d, %d tool types " +
+                          "in %.1f s: %d mismatches%n",
+                          sweep.checks, sweep.dates(), maxDays, TOOL_CODES.length,
+                          (System.nanoTime() - start) / 1e9, sweep.mismatchCount);
+        for (String mismatch : sweep.mismatches) {
+            System.out.println("  " + mismatch);
+        }
+
+        sweep.measure();
+        if (sweep.mismatchCount > 0) {
+            System.exit(1);
+        }
+    }
+
+    private long dates() {
+        return last.toEpochDay() - first.toEpochDay() + 1;
+    }
+
+    private void mismatch(String check, LocalDate checkout, ToolType toolType, int days,
+                          Object expected, Object actual) {
+        mismatchCount++;
+        if (mismatches.size() < MAX_REPORTED) {
+            mismatches.add(check + " " + checkout + " " + toolType + " " + days + " days: expected " +
+                           expected + " but was " + actual);
+        }
+    }
+
+    private void check(String check, LocalDate checkout, ToolType toolType, int days,
+                       Object expected, Object actual) {
+        checks++;
+        if (!expected.equals(actual)) {
+            mismatch(check, checkout, toolType, days, expected, actual);
+        }
+    }
+
+    private static String format(LocalDate date) {
+        // DateConverter only has a 2 digit form for the 2000s
+        return date.getYear() >= 2000 && date.getYear() <= 2099 ? SHORT.format(date) : LONG.format(date);
+    }
+
+    private void verify() {
+        int[] weekdays = new int[maxDays + 1];
+        int[] weekends = new int[maxDays + 1];
+        int[] holidayCounts = new int[maxDays + 1];
+        int discountCycle = 0;
+        for (LocalDate checkout = first; !checkout.isAfter(last); checkout = checkout.plusDays(1)) {
+            int checkoutDay = (int) checkout.toEpochDay();
+            String text = format(checkout);
+            check("parse", checkout, null, 0, checkoutDay, DateConverter.parseEpochDay(text));
+            check("parseLong", checkout, null, 0, checkoutDay,
+                  DateConverter.parseEpochDay(LONG.format(checkout)));
+            check("parseIso", checkout, null, 0, checkoutDay,
+                  DateConverter.parseEpochDay(checkout.toString()));
+            check("format", checkout, null, 0, text, DateConverter.formatDate(checkoutDay));
+
+            // Reference breakdown of every length, from a single walk
+            for (int days = 1; days <= maxDays; days++) {
+                LocalDate day = checkout.plusDays(days);
+                boolean weekend = day.getDayOfWeek() == DayOfWeek.SATURDAY ||
+                                  day.getDayOfWeek() == DayOfWeek.SUNDAY;
+                boolean holiday = holidays.contains(day);
+                weekdays[days] = weekdays[days - 1] + (!holiday && !weekend ? 1 : 0);
+                weekends[days] = weekends[days - 1] + (!holiday && weekend ? 1 : 0);
+                holidayCounts[days] = holidayCounts[days - 1] + (holiday ? 1 : 0);
+            }
+
+            for (ToolType toolType : ToolType.values()) {
+                String toolCode = TOOL_CODES[toolType.ordinal()];
+                int percent = discountCycle++ % 101;
+                PriceMatrix matrix = maxDays > 1 ? factory.createPriceMatrix(
+                        toolCode, text, String.valueOf(maxDays), percent + "%") : null;
+                for (int days = 1; days <= maxDays; days++) {
+                    int chargeDays = (toolType.isChargeWeekday() ? weekdays[days] : 0) +
+                                     (toolType.isChargeWeekend() ? weekends[days] : 0) +
+                                     (toolType.isChargeHoliday() ? holidayCounts[days] : 0);
+                    ChargeDayCalculator.Days breakdown =
+                            ChargeDayCalculator.calculateChargeDays(checkoutDay, days);
+                    check("weekdays", checkout, toolType, days, weekdays[days], breakdown.getWeekdays());
+                    check("weekends", checkout, toolType, days, weekends[days], breakdown.getWeekends());
+                    check("holidays", checkout, toolType, days, holidayCounts[days], breakdown.getHolidays());
+                    check("chargeDays", checkout, toolType, days, chargeDays,
+                          ChargeDayCalculator.calculateDaysToCharge(checkoutDay, days, toolType));
+                    if (matrix != null) {
+                        check("matrixChargeDays", checkout, toolType, days, chargeDays,
+                              matrix.getChargeDays(days));
+                        check("matrixFinalCharge", checkout, toolType, days,
+                              finalCharge(toolType, chargeDays, percent), matrix.getFinalCharge(days));
+                    }
+                    if (days > 1) {
+                        verifyAgreement(checkout, text, toolType, days, percent, chargeDays);
+                    }
+                }
+            }
+        }
+    }
+
+    private static BigDecimal preDiscountCharge(ToolType toolType, int chargeDays) {
+        return toolType.getDailyCharge().multiply(BigDecimal.valueOf(chargeDays));
+    }
+
+    private static BigDecimal discountAmount(BigDecimal preDiscountCharge, int percent) {
+        return preDiscountCharge.multiply(BigDecimal.valueOf(percent))
+                                .divide(HUNDRED)
+                                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal finalCharge(ToolType toolType, int chargeDays, int percent) {
+        BigDecimal preDiscountCharge = preDiscountCharge(toolType, chargeDays);
+        return preDiscountCharge.subtract(discountAmount(preDiscountCharge, percent));
+    }
+
+    private void verifyAgreement(LocalDate checkout, String text, ToolType toolType, int days,
+                                 int percent, int chargeDays) {
+        RentalAgreement agreement = factory.createRentalAgreement(
+                TOOL_CODES[toolType.ordinal()], text, String.valueOf(days), percent + "%");
+        BigDecimal preDiscountCharge = preDiscountCharge(toolType, chargeDays);
+        BigDecimal discountAmount = discountAmount(preDiscountCharge, percent);
+        check("agreementChargeDays", checkout, toolType, days, chargeDays, agreement.getChargeDays());
+        check("returnDate", checkout, toolType, days, format(checkout.plusDays(days)),
+              agreement.getReturnDate());
+        check("preDiscountCharge", checkout, toolType, days, preDiscountCharge,
+              agreement.getPreDiscountCharge());
+        check("discountAmount", checkout, toolType, days, discountAmount,
+              agreement.getDiscountAmount());
+        check("finalCharge", checkout, toolType, days, preDiscountCharge.subtract(discountAmount),
+              agreement.getFinalCharge());
+    }
+
+    /**
+     * Times the engine alone over the same inputs
+     */
+    private void measure() {
+        int firstDay = (int) first.toEpochDay();
+        int lastDay = (int) last.toEpochDay();
+        ToolType[] toolTypes = ToolType.values();
+        long combinations = dates() * maxDays * toolTypes.length;
+
+        // Repeat the first pass as a warmup
+        long sink = 0;
+        long elapsed = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            for (int day = firstDay; day <= lastDay; day++) {
+                for (ToolType toolType : toolTypes) {
+                    for (int days = 1; days <= maxDays; days++) {
+                        sink += ChargeDayCalculator.calculateDaysToCharge(day, days, toolType);
+                    }
+                }
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        report("charge day counts", combinations, elapsed);
+
+        String[] texts = new String[lastDay - firstDay + 1];
+        for (int day = firstDay; day <= lastDay; day++) {
+            texts[day - firstDay] = format(LocalDate.ofEpochDay(day));
+        }
+        String[] lengths = new String[maxDays + 1];
+        for (int days = 2; days <= maxDays; days++) {
+            lengths[days] = String.valueOf(days);
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            for (String text : texts) {
+                for (String toolCode : TOOL_CODES) {
+                    for (int days = 2; days <= maxDays; days++) {
+                        sink += factory.createRentalAgreement(toolCode, text, lengths[days], "10%")
+                                       .getFinalChargeCents();
+                    }
+                }
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        report("agreements", dates() * (maxDays - 1) * toolTypes.length, elapsed);
+
+        if (maxDays > 1) {
+            for (int pass = 0; pass < 2; pass++) {
+                long start = System.nanoTime();
+                for (String text : texts) {
+                    for (String toolCode : TOOL_CODES) {
+                        sink += factory.createPriceMatrix(toolCode, text, lengths[maxDays], "10%")
+                                       .getFinalChargeCents(maxDays);
+                    }
+                }
+                elapsed = System.nanoTime() - start;
+            }
+            report("price matrix lengths", combinations, elapsed);
+        }
+        // Keeps the results live so the sweeps can't be optimized away
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static void report(String what, long count, long nanos) {
+        System.out.printf("%,d %s in %.2f s: %,.0f per second, %.1f ns each%n",
+                          count, what, nanos / 1e9, count / (nanos / 1e9), nanos / (double) count);
+    }
+}
@@ -0,0 +1,55 @@
+package com.rental.bench;
+
+import com.rental.RentalAgreementFactory;
+import com.rental.objects.RentalAgreement;
+import com.rental.util.Constants;
+import com.rental.util.Metrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of per-stage metrics on a complete quote, with
+ * recording switched off and on
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private RentalAgreementFactory factory;
+
+    @Setup
+    public void setup() {
+        factory = new RentalAgreementFactory();
+        Metrics.setEnabled(enabled);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Metrics.setEnabled(false);
+    }
+
+    @Benchmark
+    public String quote() {
+        RentalAgreement agreement = factory.createRentalAgreement(
+                Constants.LADW, "7/2/20", "30", "10%");
+        return agreement.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.rental.bench;
+
+import com.rental.RentalAgreementFactory;
+import com.rental.objects.PriceMatrix;
+import com.rental.objects.RentalAgreement;
+import com.rental.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares pricing rental lengths 1-60 as one PriceMatrix against quoting
+ * each length separately, with a single quote for scale
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PriceMatrixBenchmark {
+    private static final int MAX_DAYS = 60;
+
+    private final RentalAgreementFactory factory = new RentalAgreementFactory();
+
+    @Benchmark
+    public PriceMatrix matrix() {
+        return factory.createPriceMatrix(Constants.LADW, "7/2/20", String.valueOf(MAX_DAYS), "10%");
+    }
+
+    @Benchmark
+    public void separateQuotes(Blackhole blackhole) {
+        for (int days = 2; days <= MAX_DAYS; days++) {
+            blackhole.consume(factory.createRentalAgreement(
+                    Constants.LADW, "7/2/20", String.valueOf(days), "10%"));
+        }
+    }
+
+    @Benchmark
+    public RentalAgreement singleQuote() {
+        return factory.createRentalAgreement(Constants.LADW, "7/2/20", String.valueOf(MAX_DAYS), "10%");
+    }
+}
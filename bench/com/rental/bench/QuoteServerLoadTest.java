@@ -0,0 +1,148 @@
+package com.rental.bench;
+
+import com.rental.QuoteServer;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator for QuoteServer. Each client thread sends quote
+ * requests back to back over its own keep-alive connection for the given
+ * duration, then the overall throughput and latency percentiles are reported.
+ *
+ * Usage: [url [threads [seconds]]]
+ *   url      quote endpoint to load, or "-" (the default) to start a server
+ *            on a free localhost port in this process
+ *   threads  number of concurrent clients (default 64)
+ *   seconds  length of the measured run, after a warmup of the same length
+ *            (default 10)
+ *
+ * Unlike the JMH benchmarks this measures the whole HTTP round trip, so it is
+ * run directly rather than through BenchmarkRunner.
+ */
+public class QuoteServerLoadTest {
+    private static final String[] REQUESTS = {
+            "LADW,7/2/20,3,10%",
+            "CHNS,7/2/15,5,25%",
+            "JAKD,9/3/15,6,0%",
+            "JAKR,7/2/15,9,0%",
+            "{\"toolCode\":\"JAKR\",\"checkoutDate\":\"2020-07-02\",\"rentalDays\":4,\"percentDiscount\":\"50%\"}"
+    };
+    // Latencies recorded per client before the oldest are overwritten
+    private static final int MAX_SAMPLES = 1 << 16;
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "-";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        QuoteServer server = null;
+        if ("-".equals(url)) {
+            server = new QuoteServer();
+            int port = server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            url = "http://localhost:" + port + "/quote";
+        }
+        try {
+            System.out.println("Warming up " + url);
+            run(URI.create(url), threads, seconds);
+            Result result = run(URI.create(url), threads, seconds);
+            System.out.printf("%d clients, %d requests (%d failed) in %d s: %.0f requests/s%n",
+                              threads, result.requests, result.failures, seconds,
+                              result.requests / (double) seconds);
+            System.out.printf("latency p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                              result.percentile(0.50), result.percentile(0.99),
+                              result.percentile(0.999), result.percentile(1.0));
+        }
+        finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    private static Result run(URI uri, int threads, int seconds) throws InterruptedException {
+        HttpRequest[] requests = new HttpRequest[REQUESTS.length];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = HttpRequest.newBuilder(uri)
+                                     .POST(HttpRequest.BodyPublishers.ofString(REQUESTS[i]))
+                                     .build();
+        }
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong failures = new AtomicLong();
+        long[][] latencies = new long[threads][];
+        int[] counts = new int[threads];
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int client = t;
+            Thread thread = new Thread(() -> {
+                // One client per thread keeps each thread on its own connection
+                HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+                long[] samples = new long[MAX_SAMPLES];
+                int count = 0;
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    try {
+                        HttpResponse<Void> response = http.send(requests[count % requests.length],
+                                                                HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                    samples[count++ % MAX_SAMPLES] = System.nanoTime() - now;
+                }
+                latencies[client] = samples;
+                counts[client] = count;
+                done.countDown();
+            });
+            thread.start();
+        }
+        done.await();
+        return new Result(latencies, counts, failures.get());
+    }
+
+    private static class Result {
+        final long requests;
+        final long failures;
+        final long[] sorted;
+
+        Result(long[][] latencies, int[] counts, long failures) {
+            long requests = 0;
+            int samples = 0;
+            for (int count : counts) {
+                requests += count;
+                samples += Math.min(count, MAX_SAMPLES);
+            }
+            sorted = new long[samples];
+            int position = 0;
+            for (int t = 0; t < counts.length; t++) {
+                int count = Math.min(counts[t], MAX_SAMPLES);
+                System.arraycopy(latencies[t], 0, sorted, position, count);
+                position += count;
+            }
+            Arrays.sort(sorted);
+            this.requests = requests;
+            this.failures = failures;
+        }
+
+        /**
+         * @return latency at the given fraction of samples, in microseconds
+         */
+        double percentile(double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+            return sorted[Math.max(index, 0)] / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.rental.bench;
+
+import com.rental.ToolInventory;
+import com.rental.objects.ReceiptRenderer;
+import com.rental.objects.RentalAgreement;
+import com.rental.objects.Tool;
+import com.rental.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a RentalAgreement end to end (date parsing, charge days,
+ * return date and money math) and rendering its receipt, both as a String and
+ * streamed into reused buffers (run with -prof gc to see the latter allocate
+ * nothing)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RentalAgreementBenchmark {
+    @Param({"3", "30", "1095"})
+    public int rentalDays;
+
+    private Tool tool;
+    private RentalAgreement agreement;
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(1024);
+    private final CharBuffer chars = CharBuffer.allocate(1024);
+
+    @Setup
+    public void setup() {
+        tool = ToolInventory.defaultInventory().getTool(Constants.LADW);
+        agreement = construct();
+    }
+
+    @Benchmark
+    public RentalAgreement construct() {
+        return new RentalAgreement(Constants.LADW, tool, "7/2/20", rentalDays, 10);
+    }
+
+    @Benchmark
+    public BigDecimal lazyFinalCharge() {
+        return new RentalAgreement(Constants.LADW, tool, "7/2/20", rentalDays, 10, true)
+                .getFinalCharge();
+    }
+
+    @Benchmark
+    public String lazyReturnDate() {
+        return new RentalAgreement(Constants.LADW, tool, "7/2/20", rentalDays, 10, true)
+                .getReturnDate();
+    }
+
+    @Benchmark
+    public String render() {
+        return agreement.toString();
+    }
+
+    @Benchmark
+    public ByteBuffer renderBytes() {
+        bytes.clear();
+        return ReceiptRenderer.DEFAULT.render(agreement, bytes);
+    }
+
+    @Benchmark
+    public CharBuffer renderChars() {
+        chars.clear();
+        return ReceiptRenderer.DEFAULT.render(agreement, chars);
+    }
+}
@@ -0,0 +1,58 @@
+package com.rental.bench;
+
+import com.rental.RepricingSimulator;
+import com.rental.objects.RateTable;
+import com.rental.objects.ToolType;
+import com.rental.util.DateConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures repricing a large history of agreements under candidate rates.
+ * Agreements are random checkouts across 2000-2099 for 1-30 days.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RepricingSimulatorBenchmark {
+    @Param({"1000000", "20000000"})
+    public int agreements;
+
+    private RepricingSimulator simulator;
+    private RateTable candidate;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(1);
+        ToolType[] toolTypes = ToolType.values();
+        int firstDay = DateConverter.toEpochDay(2000, 1, 1);
+        simulator = new RepricingSimulator();
+        for (int i = 0; i < agreements; i++) {
+            simulator.add(toolTypes[random.nextInt(toolTypes.length)], firstDay + random.nextInt(36500),
+                          1 + random.nextInt(30), random.nextInt(5) * 10);
+        }
+        candidate = RateTable.current()
+                .withDailyChargeCents(ToolType.LADDER, 249)
+                .withChargeDays(ToolType.CHAINSAW, true, true, true);
+    }
+
+    @Benchmark
+    public RepricingSimulator.Report simulate() {
+        return simulator.simulate(candidate);
+    }
+}
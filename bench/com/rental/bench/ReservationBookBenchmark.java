@@ -0,0 +1,76 @@
+package com.rental.bench;
+
+import com.rental.ReservationBook;
+import com.rental.ToolInventory;
+import com.rental.objects.Tool;
+import com.rental.objects.ToolType;
+import com.rental.util.Constants;
+import com.rental.util.DateConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures availability lookups for a tool with thousands of units, after
+ * booking a year of random 1-14 day rentals: with 50 bookings per unit most
+ * units are taken most days, with 2 most are free
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReservationBookBenchmark {
+    private static final int FIRST_DAY = DateConverter.toEpochDay(2020, 1, 1);
+    private static final int DAYS = 365;
+
+    @Param({"1024", "4096"})
+    public int units;
+
+    @Param({"2", "50"})
+    public int bookingsPerUnit;
+
+    private ReservationBook book;
+    private final SplittableRandom random = new SplittableRandom(1);
+
+    @Setup
+    public void setup() {
+        ToolInventory inventory = new ToolInventory();
+        inventory.addTool(Constants.LADW, new Tool(ToolType.LADDER, Constants.WERNER), units);
+        book = new ReservationBook(inventory);
+        for (int i = 0; i < units * bookingsPerUnit; i++) {
+            int fromDay = FIRST_DAY + random.nextInt(DAYS);
+            book.reserve(Constants.LADW, fromDay, fromDay + 1 + random.nextInt(14));
+        }
+    }
+
+    @Benchmark
+    public int firstFreeUnit() {
+        int fromDay = FIRST_DAY + random.nextInt(DAYS);
+        return book.firstFreeUnit(Constants.LADW, fromDay, fromDay + 7);
+    }
+
+    @Benchmark
+    public int countFreeUnits() {
+        int fromDay = FIRST_DAY + random.nextInt(DAYS);
+        return book.countFreeUnits(Constants.LADW, fromDay, fromDay + 7);
+    }
+
+    @Benchmark
+    public boolean isFree() {
+        int fromDay = FIRST_DAY + random.nextInt(DAYS);
+        return book.isFree(Constants.LADW, random.nextInt(units), fromDay, fromDay + 7);
+    }
+}
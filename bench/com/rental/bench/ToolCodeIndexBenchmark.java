@@ -0,0 +1,112 @@
+package com.rental.bench;
+
+import com.rental.util.ToolCodeIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares looking tool codes up in a ToolCodeIndex against a HashMap keyed by
+ * String, with a million codes so neither fits in cache. Codes are looked up in
+ * a scrambled order, from Strings for both and also from a reused
+ * StringBuilder and from ASCII bytes for the index. Run with -prof gc to see
+ * the allocation rates, and compare heap footprints with a heap histogram
+ * (jmap -histo) of the forked JVM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class ToolCodeIndexBenchmark {
+    private static final int CODES = 1 << 20;
+    private static final int CODE_LENGTH = 6;
+
+    private final Map<String, Object> hashMap = new HashMap<>();
+    private final ToolCodeIndex<Object> index = new ToolCodeIndex<>();
+    private final StringBuilder builder = new StringBuilder();
+    private String[] lookups;
+    private ByteBuffer bytes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Object value = new Object();
+        lookups = new String[CODES];
+        bytes = ByteBuffer.allocateDirect(CODES * CODE_LENGTH);
+        for (int i = 0; i < CODES; i++) {
+            String code = code(i);
+            hashMap.put(code, value);
+            index.putIfAbsent(code, value);
+        }
+        // Scramble lookup order so consecutive lookups don't share cache lines
+        for (int i = 0; i < CODES; i++) {
+            String code = code((int) ((i * 0x9E3779B1L) & (CODES - 1)));
+            lookups[i] = new String(code.toCharArray()); // not the key instance
+            for (int j = 0; j < CODE_LENGTH; j++) {
+                bytes.put(i * CODE_LENGTH + j, (byte) code.charAt(j));
+            }
+        }
+    }
+
+    /**
+     * Six uppercase letters, like LADW with a two letter suffix
+     */
+    private static String code(int i) {
+        char[] chars = new char[CODE_LENGTH];
+        for (int j = CODE_LENGTH - 1; j >= 0; j--) {
+            chars[j] = (char) ('A' + i % 26);
+            i /= 26;
+        }
+        return new String(chars);
+    }
+
+    private int nextLookup() {
+        next = (next + 1) & (CODES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public Object hashMapGet() {
+        return hashMap.get(lookups[nextLookup()]);
+    }
+
+    @Benchmark
+    public Object indexGet() {
+        return index.get(lookups[nextLookup()]);
+    }
+
+    @Benchmark
+    public Object indexGetCharSequence() {
+        String code = lookups[nextLookup()];
+        builder.setLength(0);
+        builder.append(code);
+        return index.get(builder);
+    }
+
+    @Benchmark
+    public Object hashMapGetCharSequence() {
+        String code = lookups[nextLookup()];
+        builder.setLength(0);
+        builder.append(code);
+        return hashMap.get(builder.toString());
+    }
+
+    @Benchmark
+    public Object indexGetBytes() {
+        return index.get(bytes, nextLookup() * CODE_LENGTH, CODE_LENGTH);
+    }
+}
@@ -0,0 +1,49 @@
+package com.rental.bench;
+
+import com.rental.ToolInventory;
+import com.rental.objects.Tool;
+import com.rental.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up tools by code, for both known and unknown codes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ToolInventoryBenchmark {
+    private static final String[] CODES = {Constants.LADW, Constants.CHNS,
+                                           Constants.JAKR, Constants.JAKD};
+
+    private ToolInventory inventory;
+    private int next;
+
+    @Setup
+    public void setup() {
+        inventory = ToolInventory.defaultInventory();
+    }
+
+    @Benchmark
+    public Tool getTool() {
+        return inventory.getTool(CODES[next++ & (CODES.length - 1)]);
+    }
+
+    @Benchmark
+    public Tool getUnknownTool() {
+        return inventory.getTool("TEST");
+    }
+}
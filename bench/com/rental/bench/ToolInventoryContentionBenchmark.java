@@ -0,0 +1,79 @@
+package com.rental.bench;
+
+import com.rental.ToolInventory;
+import com.rental.objects.Tool;
+import com.rental.objects.ToolType;
+import com.rental.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures checkout/return throughput with many threads, both when every
+ * thread works with its own tool and when all of them hit a single hot tool.
+ * Run with -t to change the thread count.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ToolInventoryContentionBenchmark {
+    private static final int TOOLS = 1024;
+    private static final String HOT_CODE = Constants.LADW;
+
+    private final AtomicInteger nextThread = new AtomicInteger();
+    private ToolInventory inventory;
+
+    @Setup
+    public void setup() {
+        inventory = new ToolInventory();
+        Tool tool = new Tool(ToolType.LADDER, Constants.WERNER);
+        inventory.addTool(HOT_CODE, tool, Integer.MAX_VALUE);
+        for (int i = 0; i < TOOLS; i++) {
+            inventory.addTool(code(i), tool, Integer.MAX_VALUE);
+        }
+    }
+
+    private static String code(int i) {
+        return "T" + i;
+    }
+
+    /**
+     * Gives each benchmark thread a tool of its own
+     */
+    @State(Scope.Thread)
+    public static class ThreadTool {
+        String toolCode;
+
+        @Setup
+        public void setup(ToolInventoryContentionBenchmark benchmark) {
+            toolCode = code(benchmark.nextThread.getAndIncrement() % TOOLS);
+        }
+    }
+
+    @Benchmark
+    public boolean checkoutAndReturnDistinctTools(ThreadTool threadTool) {
+        inventory.checkout(threadTool.toolCode);
+        return inventory.returnTool(threadTool.toolCode);
+    }
+
+    @Benchmark
+    public boolean checkoutAndReturnHotTool() {
+        inventory.checkout(HOT_CODE);
+        return inventory.returnTool(HOT_CODE);
+    }
+}
@@ -0,0 +1,328 @@
+package com.rental;
+
+import com.rental.objects.AgreementRecord;
+import com.rental.objects.RentalAgreement;
+import com.rental.objects.ToolType;
+import com.rental.util.Constants;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column oriented store of issued agreements for revenue reporting. Only the
+ * fields reports need are kept, each in its own off-heap column (a direct
+ * ByteBuffer), so tens of millions of agreements cost about 26 bytes each and
+ * nothing for the garbage collector to trace:
+ * <pre>
+ *   checkout day     int
+ *   charge days      int
+ *   group            short, index of the agreement's (tool type, brand) pair
+ *   discount amount  long, cents
+ *   final charge     long, cents
+ * </pre>
+ * A store holds at most MAX_GROUPS (65536) distinct (tool type, brand) pairs,
+ * however many agreements it has room for.
+ *
+ * Rows are grouped into blocks that record the lowest and highest checkout day
+ * they hold. A date range query skips every block outside the range and sums
+ * blocks entirely inside it without testing each row, so agreements added in
+ * roughly checkout order are scanned only where the range overlaps them.
+ *
+ * Agreements are added by one thread at a time, while any number of threads can
+ * run reports, each seeing every agreement added before it started.
+ */
+public class AgreementColumnStore {
+    // Rows per block of checkout day statistics
+    private static final int BLOCK_SIZE = 1 << 12;
+    // Groups are stored in a column of unsigned shorts
+    public static final int MAX_GROUPS = 1 << 16;
+
+    private final int capacity;
+    private final ByteBuffer checkoutDays;
+    private final ByteBuffer chargeDays;
+    private final ByteBuffer groups;
+    private final ByteBuffer discountAmounts;
+    private final ByteBuffer finalCharges;
+    private final int[] blockMinDay;
+    private final int[] blockMaxDay;
+
+    // Group dictionary, indexed by group (guarded by this)
+    private final List<ToolType> groupTypes = new ArrayList<>();
+    private final List<String> groupBrands = new ArrayList<>();
+    private final List<Map<String, Integer>> groupIds = new ArrayList<>(); // by tool type, then brand
+
+    /* Number of rows added. Written after a row's columns, so a report that
+       reads it sees every column of every row below it */
+    private volatile int size;
+
+    /**
+     * @param capacity most agreements the store can hold
+     */
+    public AgreementColumnStore(int capacity) {
+        if (capacity < 0 || capacity > Integer.MAX_VALUE / Long.BYTES) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        checkoutDays = column(capacity * Integer.BYTES);
+        chargeDays = column(capacity * Integer.BYTES);
+        groups = column(capacity * Short.BYTES);
+        discountAmounts = column(capacity * Long.BYTES);
+        finalCharges = column(capacity * Long.BYTES);
+        int blocks = (capacity + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blockMinDay = new int[blocks];
+        blockMaxDay = new int[blocks];
+        for (int i = 0; i < ToolType.values().length; i++) {
+            groupIds.add(new HashMap<>());
+        }
+    }
+
+    private static ByteBuffer column(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @param agreement agreement to add, calculating its charges if needed
+     */
+    public synchronized void add(RentalAgreement agreement) {
+        add(agreement.getToolType(), agreement.getToolBrand(), agreement.getCheckoutDay(),
+            agreement.getChargeDays(), agreement.getDiscountAmountCents(),
+            agreement.getFinalChargeCents());
+    }
+
+    /**
+     * @param record encoded agreement to add, such as one replayed from the journal
+     */
+    public synchronized void add(AgreementRecord record) {
+        add(record.getToolType(), record.getToolBrand(), record.getCheckoutDay(),
+            record.getChargeDays(), record.getDiscountAmountCents(),
+            record.getFinalChargeCents());
+    }
+
+    private void add(ToolType toolType, String brand, int checkoutDay, int days,
+                     long discountAmountCents, long finalChargeCents) {
+        int row = size;
+        if (row == capacity) {
+            throw new RuntimeException(Constants.COLUMN_STORE_FULL);
+        }
+        int group = groupId(toolType, brand);
+        checkoutDays.putInt(row * Integer.BYTES, checkoutDay);
+        chargeDays.putInt(row * Integer.BYTES, days);
+        groups.putShort(row * Short.BYTES, (short) group);
+        discountAmounts.putLong(row * Long.BYTES, discountAmountCents);
+        finalCharges.putLong(row * Long.BYTES, finalChargeCents);
+
+        int block = row / BLOCK_SIZE;
+        if (row % BLOCK_SIZE == 0) {
+            blockMinDay[block] = checkoutDay;
+            blockMaxDay[block] = checkoutDay;
+        }
+        else {
+            blockMinDay[block] = Math.min(blockMinDay[block], checkoutDay);
+            blockMaxDay[block] = Math.max(blockMaxDay[block], checkoutDay);
+        }
+        size = row + 1;
+    }
+
+    private int groupId(ToolType toolType, String brand) {
+        Integer id = groupIds.get(toolType.ordinal()).get(brand);
+        if (id == null) {
+            if (groupTypes.size() == MAX_GROUPS) {
+                throw new RuntimeException(Constants.COLUMN_STORE_GROUPS + MAX_GROUPS);
+            }
+            id = groupTypes.size();
+            groupTypes.add(toolType);
+            groupBrands.add(brand);
+            groupIds.get(toolType.ordinal()).put(brand, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return number of agreements in the store
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Totals every agreement checked out within a range of days, grouped by tool
+     * type and brand
+     *
+     * @param fromDay first epoch day of checkouts to include
+     * @param toDay last epoch day of checkouts to include
+     * @return totals for each tool type and brand with any agreements in range
+     */
+    public Report report(int fromDay, int toDay) {
+        int rows = size;
+        List<ToolType> types;
+        List<String> brands;
+        synchronized (this) {
+            types = new ArrayList<>(groupTypes);
+            brands = new ArrayList<>(groupBrands);
+        }
+        int groupCount = types.size();
+        long[] counts = new long[groupCount];
+        long[] days = new long[groupCount];
+        long[] discounts = new long[groupCount];
+        long[] finals = new long[groupCount];
+
+        for (int start = 0; start < rows; start += BLOCK_SIZE) {
+            int block = start / BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, rows);
+            if (blockMaxDay[block] < fromDay || blockMinDay[block] > toDay) {
+                continue;
+            }
+            if (blockMinDay[block] >= fromDay && blockMaxDay[block] <= toDay) {
+                sumBlock(start, end, counts, days, discounts, finals);
+            }
+            else {
+                sumBlock(start, end, fromDay, toDay, counts, days, discounts, finals);
+            }
+        }
+
+        List<Totals> totals = new ArrayList<>();
+        for (int group = 0; group < groupCount; group++) {
+            if (counts[group] > 0) {
+                totals.add(new Totals(types.get(group), brands.get(group), counts[group],
+                                      days[group], discounts[group], finals[group]));
+            }
+        }
+        return new Report(totals);
+    }
+
+    /**
+     * Sums every row of a block that lies entirely within the queried range
+     */
+    private void sumBlock(int start, int end, long[] counts, long[] days,
+                          long[] discounts, long[] finals) {
+        for (int row = start; row < end; row++) {
+            int group = groups.getShort(row * Short.BYTES) & 0xffff;
+            counts[group]++;
+            days[group] += chargeDays.getInt(row * Integer.BYTES);
+            discounts[group] += discountAmounts.getLong(row * Long.BYTES);
+            finals[group] += finalCharges.getLong(row * Long.BYTES);
+        }
+    }
+
+    /**
+     * Sums the rows of a block that fall within the queried range
+     */
+    private void sumBlock(int start, int end, int fromDay, int toDay, long[] counts,
+                          long[] days, long[] discounts, long[] finals) {
+        for (int row = start; row < end; row++) {
+            int checkoutDay = checkoutDays.getInt(row * Integer.BYTES);
+            if (checkoutDay < fromDay || checkoutDay > toDay) {
+                continue;
+            }
+            int group = groups.getShort(row * Short.BYTES) & 0xffff;
+            counts[group]++;
+            days[group] += chargeDays.getInt(row * Integer.BYTES);
+            discounts[group] += discountAmounts.getLong(row * Long.BYTES);
+            finals[group] += finalCharges.getLong(row * Long.BYTES);
+        }
+    }
+
+    /**
+     * Totals of a report, for one tool type and brand
+     */
+    public static class Totals {
+        private final ToolType toolType;
+        private final String brand;
+        private final long agreements;
+        private final long chargeDays;
+        private final long discountAmountCents;
+        private final long finalChargeCents;
+
+        Totals(ToolType toolType, String brand, long agreements, long chargeDays,
+               long discountAmountCents, long finalChargeCents) {
+            this.toolType = toolType;
+            this.brand = brand;
+            this.agreements = agreements;
+            this.chargeDays = chargeDays;
+            this.discountAmountCents = discountAmountCents;
+            this.finalChargeCents = finalChargeCents;
+        }
+
+        public ToolType getToolType() {
+            return toolType;
+        }
+
+        public String getBrand() {
+            return brand;
+        }
+
+        public long getAgreements() {
+            return agreements;
+        }
+
+        public long getChargeDays() {
+            return chargeDays;
+        }
+
+        public long getDiscountAmountCents() {
+            return discountAmountCents;
+        }
+
+        public long getFinalChargeCents() {
+            return finalChargeCents;
+        }
+    }
+
+    /**
+     * Result of a report: totals for each tool type and brand, which can be
+     * rolled up by either
+     */
+    public static class Report {
+        private final List<Totals> totals;
+
+        Report(List<Totals> totals) {
+            this.totals = Collections.unmodifiableList(totals);
+        }
+
+        /**
+         * @return totals for every tool type and brand with agreements in range
+         */
+        public List<Totals> getTotals() {
+            return totals;
+        }
+
+        /**
+         * @param toolType tool type to roll up
+         * @return totals across every brand of the tool type
+         */
+        public Totals getTotals(ToolType toolType) {
+            return rollUp(toolType, null);
+        }
+
+        /**
+         * @param brand brand to roll up
+         * @return totals across every tool type of the brand
+         */
+        public Totals getTotals(String brand) {
+            return rollUp(null, brand);
+        }
+
+        private Totals rollUp(ToolType toolType, String brand) {
+            long agreements = 0;
+            long chargeDays = 0;
+            long discountAmountCents = 0;
+            long finalChargeCents = 0;
+            for (Totals group : totals) {
+                if ((toolType == null || group.toolType == toolType) &&
+                    (brand == null || group.brand.equals(brand))) {
+                    agreements += group.agreements;
+                    chargeDays += group.chargeDays;
+                    discountAmountCents += group.discountAmountCents;
+                    finalChargeCents += group.finalChargeCents;
+                }
+            }
+            return new Totals(toolType, brand, agreements, chargeDays,
+                              discountAmountCents, finalChargeCents);
+        }
+    }
+}
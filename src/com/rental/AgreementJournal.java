@@ -0,0 +1,242 @@
+package com.rental;
+
+import com.rental.objects.AgreementRecord;
+import com.rental.objects.RentalAgreement;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, crash safe log of every rental agreement issued, kept for
+ * auditing. Each record is written as
+ * <pre>
+ *   [payload length: int][CRC32 of payload: int][payload]
+ * </pre>
+ * and an append only returns once its record has been forced to disk.
+ *
+ * Writers that append at the same time share a single force (group commit):
+ * whichever writer finds no force in progress becomes the leader and forces
+ * everything written so far, while the others wait and return as soon as a
+ * force covering their record completes. Durability therefore costs one fsync
+ * per batch of concurrent checkouts rather than one per checkout.
+ *
+ * A crash can leave a partially written record at the end of the file, or
+ * a tail of zeros if the file was extended but its data never reached disk.
+ * On open the journal is scanned, and everything from the first incomplete,
+ * corrupt or empty record on is truncated away. Empty payloads are refused
+ * on append, since a zero filled header (length 0, CRC32 0) would otherwise
+ * look like a valid empty record.
+ */
+public class AgreementJournal implements Closeable {
+    private static final int HEADER_SIZE = 8;
+    // Largest payload accepted, so a corrupt length can't trigger a huge read
+    private static final int MAX_PAYLOAD_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private volatile long written; // end of the last record written (guarded by writeLock)
+    private long durable; // end of the last record forced to disk (guarded by syncLock)
+    private boolean syncing; // whether a leader is forcing (guarded by syncLock)
+
+    /**
+     * Opens (or creates) a journal, recovering from a torn tail left by a crash
+     *
+     * @param file path of the journal
+     * @throws IOException if the journal can't be opened or repaired
+     */
+    public AgreementJournal(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        try {
+            long end = recover();
+            if (end < channel.size()) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+            written = end;
+            durable = end;
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the end of the last intact record
+     */
+    private long recover() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, position);
+            int length = header.getInt(0);
+            // Zero lengths are never written, and mark a tail that was zero filled
+            if (length <= 0 || length > MAX_PAYLOAD_SIZE ||
+                position + HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + HEADER_SIZE);
+            if (crc(payload.array()) != header.getInt(4)) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Durably records an agreement, as its binary AgreementRecord
+     *
+     * @param agreement agreement that was issued
+     * @throws IOException if the record can't be written or forced to disk
+     */
+    public void append(RentalAgreement agreement) throws IOException {
+        append(AgreementRecord.encode(agreement));
+    }
+
+    /**
+     * Durably records a payload, returning once it has been forced to disk
+     *
+     * @param payload bytes to record, at least one
+     * @throws IOException if the record can't be written or forced to disk
+     */
+    public void append(byte[] payload) throws IOException {
+        if (payload.length > MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("Journal record too large: " + payload.length);
+        }
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("Journal record is empty");
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        record.putInt(payload.length).putInt(crc(payload)).put(payload).flip();
+        long end;
+        synchronized (writeLock) {
+            long position = written;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            written = end = position;
+        }
+        awaitDurable(end);
+    }
+
+    /**
+     * Waits until everything up to the given position has been forced, leading
+     * a force of all records written so far whenever none is in progress
+     */
+    private void awaitDurable(long end) throws IOException {
+        while (true) {
+            long target;
+            synchronized (syncLock) {
+                while (durable < end && syncing) {
+                    try {
+                        syncLock.wait();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted waiting for journal sync");
+                    }
+                }
+                if (durable >= end) {
+                    return;
+                }
+                syncing = true;
+                target = written;
+            }
+            boolean forced = false;
+            try {
+                channel.force(false);
+                forced = true;
+            }
+            finally {
+                synchronized (syncLock) {
+                    syncing = false;
+                    if (forced) {
+                        durable = target;
+                    }
+                    // On failure a waiting writer takes over as leader and retries
+                    syncLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return size in bytes of every record written so far
+     */
+    public long size() {
+        return written;
+    }
+
+    /**
+     * Iterates over the payloads of every record written before this call, in
+     * the order they were appended. Appends made while iterating are not seen.
+     *
+     * @return iterator over the journal's payloads
+     */
+    public Iterator<byte[]> replay() {
+        long end = written;
+        return new Iterator<byte[]>() {
+            private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            private long position;
+
+            @Override
+            public boolean hasNext() {
+                return position < end;
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    header.clear();
+                    readFully(header, position);
+                    ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+                    readFully(payload, position + HEADER_SIZE);
+                    position += HEADER_SIZE + payload.capacity();
+                    return payload.array();
+                }
+                catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            position += read;
+        }
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,259 @@
+package com.rental;
+
+import com.rental.objects.Tool;
+import com.rental.objects.ToolType;
+import com.rental.util.Constants;
+import com.rental.util.ToolCodeIndex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Read-only catalog of tools stored in a binary file that is memory-mapped
+ * rather than read, so opening one costs the same for four tools or a
+ * million. The file is a header followed by fixed-width entries sorted by tool
+ * code:
+ * <pre>
+ *   header   magic "RTIS", version, entry count, entry size (ints)
+ *   entry    tool code   8 bytes, ASCII, zero padded
+ *            brand      16 bytes, ASCII, zero padded
+ *            tool type   byte, ToolType ordinal
+ *            (reserved)  3 bytes
+ *            units       int
+ * </pre>
+ * Tool codes are compared as the big-endian long of their 8 bytes, which
+ * orders them the same as comparing their characters, so finding a tool is a
+ * binary search over the mapped entries. Pages are only read from disk as the
+ * search touches them.
+ *
+ * Snapshots are generated from CSV with write (see ToolRental --snapshot).
+ */
+public class InventorySnapshot {
+    private static final int MAGIC = 0x52544953; // "RTIS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 32;
+    private static final int TOOL_CODE_LENGTH = 8;
+    private static final int BRAND = 8;
+    private static final int BRAND_LENGTH = 16;
+    private static final int TOOL_TYPE = 24;
+    private static final int UNITS = 28;
+
+    private static final ToolType[] TOOL_TYPES = ToolType.values();
+
+    private final ByteBuffer entries;
+    private final int size;
+
+    private InventorySnapshot(ByteBuffer entries, int size) {
+        this.entries = entries;
+        this.size = size;
+    }
+
+    /**
+     * Maps a snapshot file, checking only its header
+     *
+     * @param file snapshot to open
+     * @return the mapped snapshot
+     * @throws IOException if the file can't be mapped or isn't a snapshot
+     */
+    public static InventorySnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer buffer = mapped.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC ||
+                buffer.getInt(4) != VERSION || buffer.getInt(12) != ENTRY_SIZE) {
+                throw new IOException(Constants.BAD_SNAPSHOT + file);
+            }
+            int size = buffer.getInt(8);
+            if (size < 0 || (long) size * ENTRY_SIZE != buffer.capacity() - HEADER_SIZE) {
+                throw new IOException(Constants.BAD_SNAPSHOT + file);
+            }
+            return new InventorySnapshot(buffer.position(HEADER_SIZE).slice(), size);
+        }
+    }
+
+    /**
+     * @return number of tools in the snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Binary searches the entries for a tool code
+     *
+     * @param toolCode code to look up
+     * @return index of the tool's entry, or -1 if it isn't in the snapshot
+     */
+    public int find(CharSequence toolCode) {
+        long key = ToolCodeIndex.pack(toolCode);
+        if (key == 0) {
+            return -1;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Long.compareUnsigned(entries.getLong(middle * ENTRY_SIZE), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            }
+            else if (comparison > 0) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public String getToolCode(int entry) {
+        return getAscii(entry * ENTRY_SIZE, TOOL_CODE_LENGTH);
+    }
+
+    /**
+     * @param entry index returned by find
+     * @return a new Tool built from the entry
+     */
+    public Tool getTool(int entry) {
+        int offset = entry * ENTRY_SIZE;
+        return new Tool(TOOL_TYPES[entries.get(offset + TOOL_TYPE)],
+                        getAscii(offset + BRAND, BRAND_LENGTH));
+    }
+
+    public int getUnits(int entry) {
+        return entries.getInt(entry * ENTRY_SIZE + UNITS);
+    }
+
+    private String getAscii(int offset, int length) {
+        char[] chars = new char[length];
+        int count = 0;
+        for (; count < length; count++) {
+            byte b = entries.get(offset + count);
+            if (b == 0) {
+                break;
+            }
+            chars[count] = (char) b;
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Builds a snapshot from CSV lines of toolCode,toolType,brand,units. Tool
+     * types may be given by name (Ladder) or constant (LADDER), and blank
+     * lines, # comments and a toolCode header line are skipped.
+     *
+     * @param csv source of the catalog
+     * @param file snapshot file to create (or replace)
+     * @return number of tools written
+     * @throws IOException if the catalog can't be read or the snapshot written
+     */
+    public static int write(BufferedReader csv, Path file) throws IOException {
+        List<Entry> catalog = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = csv.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("toolCode")) {
+                continue;
+            }
+            try {
+                catalog.add(parseEntry(line));
+            }
+            catch (RuntimeException e) {
+                throw new IllegalArgumentException(
+                        Constants.BAD_SNAPSHOT + "line " + lineNumber + ": " + line, e);
+            }
+        }
+        catalog.sort(Comparator.comparing(entry -> entry.key, Long::compareUnsigned));
+        for (int i = 1; i < catalog.size(); i++) {
+            if (catalog.get(i).key == catalog.get(i - 1).key) {
+                throw new IllegalArgumentException(
+                        Constants.REPEAT_TOOL_CODE + ": " + catalog.get(i).toolCode);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + catalog.size() * ENTRY_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(catalog.size()).putInt(ENTRY_SIZE);
+        for (Entry entry : catalog) {
+            buffer.putLong(entry.key);
+            for (int i = 0; i < BRAND_LENGTH; i++) {
+                buffer.put((byte) (i < entry.brand.length() ? entry.brand.charAt(i) : 0));
+            }
+            buffer.put((byte) entry.toolType.ordinal()).put((byte) 0).putShort((short) 0);
+            buffer.putInt(entry.units);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        return catalog.size();
+    }
+
+    private static Entry parseEntry(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Expected 4 comma separated fields");
+        }
+        String toolCode = fields[0].trim();
+        long key = ToolCodeIndex.pack(toolCode);
+        if (key == 0) {
+            throw new IllegalArgumentException("Tool code must be 1-8 ASCII characters");
+        }
+        String brand = fields[2].trim();
+        if (brand.length() > BRAND_LENGTH || !brand.chars().allMatch(c -> c > 0 && c <= 0x7f)) {
+            throw new IllegalArgumentException("Brand must be at most 16 ASCII characters");
+        }
+        int units = Integer.parseInt(fields[3].trim());
+        if (units < 0) {
+            throw new IllegalArgumentException("Unit count cannot be negative: " + units);
+        }
+        return new Entry(toolCode, key, toolType(fields[1].trim()), brand, units);
+    }
+
+    private static ToolType toolType(String name) {
+        for (ToolType toolType : TOOL_TYPES) {
+            if (toolType.getName().equalsIgnoreCase(name) ||
+                toolType.name().equals(name.toUpperCase(Locale.ROOT))) {
+                return toolType;
+            }
+        }
+        throw new IllegalArgumentException("Unknown tool type: " + name);
+    }
+
+    /**
+     * A single tool parsed from the catalog, before it is written
+     */
+    private static class Entry {
+        final String toolCode;
+        final long key;
+        final ToolType toolType;
+        final String brand;
+        final int units;
+
+        Entry(String toolCode, long key, ToolType toolType, String brand, int units) {
+            this.toolCode = toolCode;
+            this.key = key;
+            this.toolType = toolType;
+            this.brand = brand;
+            this.units = units;
+        }
+    }
+}
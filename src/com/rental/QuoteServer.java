@@ -0,0 +1,284 @@
+package com.rental;
+
+import com.rental.objects.AgreementRecord;
+import com.rental.objects.QuoteResult;
+import com.rental.objects.RentalAgreement;
+import com.rental.util.Constants;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP/JSON front end for the Point-of-Sales terminals, built on the
+ * JDK's HTTP server so a single warm process can serve every quote. Each
+ * exchange runs on its own virtual thread when the runtime supports them (or a
+ * pooled platform thread otherwise), and connections are kept alive between
+ * requests since every response is sent with its length.
+ *
+ * Endpoints (all POST):
+ * <pre>
+ *   /quote     body is one request line in the --stream format (CSV or JSON);
+ *              prices it without touching stock
+ *   /checkout  same body; prices it, checks one unit of the tool out and
+ *              records the agreement in the journal (if the server has one)
+ *   /return    body is a tool code; puts one unit of the tool back in stock
+ * </pre>
+ * Responses are single JSON objects with a "status" of "ok" or "error".
+ */
+public class QuoteServer {
+    // Longest request body accepted, in bytes
+    private static final int MAX_BODY_SIZE = 1 << 16;
+    // Connections queued by the OS while every handler is busy
+    private static final int BACKLOG = 1024;
+
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int NOT_FOUND = 404;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int CONFLICT = 409;
+    private static final int PAYLOAD_TOO_LARGE = 413;
+    private static final int UNPROCESSABLE = 422;
+    private static final int INTERNAL_ERROR = 500;
+
+    static {
+        /* Small responses otherwise wait on Nagle's algorithm for the client's
+           delayed ACK (around 40ms per keep-alive request). The JDK server reads
+           this once, when the first server is created. */
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ToolInventory inventory;
+    private final RentalAgreementFactory factory;
+    private final AgreementJournal journal; // null if checkouts aren't recorded
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Serves the tools defined in the spec
+     */
+    public QuoteServer() {
+        this(ToolInventory.defaultInventory());
+    }
+
+    /**
+     * @param inventory tools to quote, and whose stock checkouts and returns update
+     */
+    public QuoteServer(ToolInventory inventory) {
+        this(inventory, null);
+    }
+
+    /**
+     * @param inventory tools to quote, and whose stock checkouts and returns update
+     * @param journal journal to record every checkout in, or null for none
+     */
+    public QuoteServer(ToolInventory inventory, AgreementJournal journal) {
+        this.inventory = inventory;
+        this.factory = new RentalAgreementFactory(inventory);
+        this.journal = journal;
+    }
+
+    /**
+     * Starts accepting connections on every local address
+     *
+     * @param port port to listen on, or 0 for any free port
+     * @return port the server is listening on
+     * @throws IOException if the port can't be bound
+     */
+    public synchronized int start(int port) throws IOException {
+        return start(new InetSocketAddress(port));
+    }
+
+    /**
+     * @param address address to listen on
+     * @return port the server is listening on
+     * @throws IOException if the address can't be bound
+     */
+    public synchronized int start(InetSocketAddress address) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        server = HttpServer.create(address, BACKLOG);
+        server.createContext("/quote", exchange -> handle(exchange, this::quote));
+        server.createContext("/checkout", exchange -> handle(exchange, this::checkout));
+        server.createContext("/return", exchange -> handle(exchange, this::returnTool));
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting connections, waiting briefly for exchanges in progress
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * @return port the server is listening on, or -1 if it isn't running
+     */
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+     * Virtual threads only exist from Java 21 on, so they are looked up
+     * reflectively to keep the server running on older runtimes
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private int quote(String body, StringBuilder response) {
+        QuoteResult quote = price(body);
+        if (!quote.isSuccess()) {
+            return error(response, BAD_REQUEST, quote.getError());
+        }
+        appendAgreement(response, quote.getAgreement());
+        response.append('}');
+        return OK;
+    }
+
+    private int checkout(String body, StringBuilder response) {
+        QuoteResult quote = price(body);
+        if (!quote.isSuccess()) {
+            return error(response, BAD_REQUEST, quote.getError());
+        }
+        String toolCode = quote.getAgreement().getToolCode();
+        byte[] record = null;
+        if (journal != null) {
+            // Encoded before a unit is taken, since a tool code or brand too
+            // long for an agreement record means the checkout can't be journaled
+            try {
+                record = AgreementRecord.encode(quote.getAgreement());
+            }
+            catch (IllegalArgumentException e) {
+                return error(response, UNPROCESSABLE, Constants.JOURNAL_FAILURE + e.getMessage());
+            }
+        }
+        if (!inventory.checkout(toolCode)) {
+            return error(response, CONFLICT, Constants.NO_UNITS_AVAILABLE + toolCode);
+        }
+        if (record != null) {
+            try {
+                journal.append(record);
+            }
+            catch (IOException | RuntimeException e) {
+                // An agreement that wasn't recorded was never issued
+                inventory.returnTool(toolCode);
+                return error(response, INTERNAL_ERROR, Constants.JOURNAL_FAILURE + e.getMessage());
+            }
+        }
+        appendAgreement(response, quote.getAgreement());
+        response.append(",\"availableUnits\":").append(inventory.getAvailableUnits(toolCode))
+                .append('}');
+        return OK;
+    }
+
+    private int returnTool(String body, StringBuilder response) {
+        String toolCode = body.trim();
+        if (inventory.getTool(toolCode) == null) {
+            return error(response, NOT_FOUND, Constants.BAD_TOOL_CODE + toolCode);
+        }
+        if (!inventory.returnTool(toolCode)) {
+            return error(response, CONFLICT, Constants.NO_UNITS_CHECKED_OUT + toolCode);
+        }
+        response.append("{\"status\":\"ok\",\"toolCode\":");
+        QuoteStreamProcessor.appendJsonString(response, toolCode);
+        response.append(",\"availableUnits\":").append(inventory.getAvailableUnits(toolCode))
+                .append('}');
+        return OK;
+    }
+
+    private QuoteResult price(String body) {
+        QuoteStreamProcessor.Line line = QuoteStreamProcessor.parseLine(body, 1);
+        return line.request == null ? QuoteResult.failure(line.error) : factory.quote(line.request);
+    }
+
+    /**
+     * Opens a successful response with every agreement field, leaving the
+     * object open for the endpoint to finish
+     */
+    private static void appendAgreement(StringBuilder response, RentalAgreement agreement) {
+        response.append("{\"status\":\"ok\",");
+        QuoteStreamProcessor.appendJsonAgreement(response, agreement);
+    }
+
+    private static int error(StringBuilder response, int status, String message) {
+        response.append("{\"status\":\"error\",\"error\":");
+        QuoteStreamProcessor.appendJsonString(response, message);
+        response.append('}');
+        return status;
+    }
+
+    /**
+     * Reads the whole request body, runs the endpoint and sends its response
+     * with a fixed length so the connection can be reused
+     */
+    private static void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        try (exchange) {
+            StringBuilder response = new StringBuilder(512);
+            int status;
+            byte[] body = readBody(exchange.getRequestBody());
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                status = error(response, METHOD_NOT_ALLOWED, "Use POST");
+            }
+            else if (body == null) {
+                status = error(response, PAYLOAD_TOO_LARGE, "Request body too large");
+            }
+            else {
+                status = endpoint.handle(new String(body, StandardCharsets.UTF_8), response);
+            }
+            byte[] bytes = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * @return the body, or null if it is longer than MAX_BODY_SIZE (in which
+     *         case the rest is still drained so the connection stays usable)
+     */
+    private static byte[] readBody(InputStream in) throws IOException {
+        try (in) {
+            byte[] body = in.readNBytes(MAX_BODY_SIZE);
+            if (in.read() < 0) {
+                return body;
+            }
+            in.transferTo(OutputStream.nullOutputStream());
+            return null;
+        }
+    }
+
+    /**
+     * A single endpoint: writes its JSON response and returns the HTTP status
+     */
+    private interface Endpoint {
+        int handle(String body, StringBuilder response);
+    }
+}
@@ -0,0 +1,341 @@
+package com.rental;
+
+import com.rental.objects.QuoteRequest;
+import com.rental.objects.QuoteResult;
+import com.rental.objects.RentalAgreement;
+import com.rental.util.Metrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prices a stream of quote requests, one per line, writing one result line per
+ * request in the same order. Lines are either CSV
+ * (toolCode,checkoutDate,rentalDays,percentDiscount) or NDJSON objects with the
+ * same four keys, and each result is written in the format of its input line.
+ *
+ * Input is read and priced a chunk of lines at a time, so memory use stays
+ * constant no matter how large the input is.
+ */
+public class QuoteStreamProcessor {
+    // Number of lines priced together (in parallel) before results are written
+    private static final int CHUNK_SIZE = 4096;
+    // Keys read from NDJSON requests, in QuoteRequest constructor order
+    private static final List<String> REQUEST_KEYS =
+            List.of("toolCode", "checkoutDate", "rentalDays", "percentDiscount");
+
+    private final RentalAgreementFactory factory;
+
+    public QuoteStreamProcessor(RentalAgreementFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Reads every request from the input and writes its result to the output.
+     * Blank lines are skipped, and a malformed line produces an error result
+     * without stopping the rest of the stream.
+     *
+     * @param in buffered source of request lines
+     * @param out destination for result lines (flushed once the input is exhausted)
+     * @return number of requests processed
+     * @throws IOException if reading the input or writing the output fails
+     */
+    public long process(BufferedReader in, Writer out) throws IOException {
+        List<QuoteRequest> requests = new ArrayList<>(CHUNK_SIZE);
+        List<Line> lines = new ArrayList<>(CHUNK_SIZE);
+        StringBuilder result = new StringBuilder(256);
+        long lineNumber = 0;
+        long processed = 0;
+
+        String text;
+        while ((text = in.readLine()) != null) {
+            lineNumber++;
+            if (text.trim().isEmpty()) {
+                continue;
+            }
+            Line line = parseLine(text, lineNumber);
+            lines.add(line);
+            if (line.request != null) {
+                requests.add(line.request);
+            }
+            if (lines.size() == CHUNK_SIZE) {
+                processed += writeChunk(lines, requests, out, result);
+            }
+        }
+        processed += writeChunk(lines, requests, out, result);
+        out.flush();
+        return processed;
+    }
+
+    /**
+     * Prices the buffered chunk and writes its results in input order
+     */
+    private long writeChunk(List<Line> lines, List<QuoteRequest> requests,
+                            Writer out, StringBuilder result) throws IOException {
+        List<QuoteResult> quotes = factory.createRentalAgreements(requests);
+        int next = 0;
+        for (Line line : lines) {
+            result.setLength(0);
+            String error = line.error;
+            RentalAgreement agreement = null;
+            if (line.request != null) {
+                QuoteResult quote = quotes.get(next++);
+                error = quote.getError();
+                agreement = quote.getAgreement();
+            }
+            if (line.json) {
+                appendJsonResult(result, line.number, agreement, error);
+            }
+            else {
+                appendCsvResult(result, line.number, agreement, error);
+            }
+            result.append('\n');
+            out.append(result);
+        }
+        long written = lines.size();
+        lines.clear();
+        requests.clear();
+        return written;
+    }
+
+    /**
+     * Splits a single input line into a request, or records why it could not be
+     */
+    static Line parseLine(String text, long number) {
+        String trimmed = text.trim();
+        try {
+            if (trimmed.startsWith("{")) {
+                return new Line(number, true, parseJsonRequest(trimmed), null);
+            }
+            return new Line(number, false, parseCsvRequest(trimmed), null);
+        }
+        catch (IllegalArgumentException e) {
+            return new Line(number, trimmed.startsWith("{"), null, e.getMessage());
+        }
+    }
+
+    private static QuoteRequest parseCsvRequest(String text) {
+        String[] fields = text.split(",", -1);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Expected 4 comma separated fields");
+        }
+        return new QuoteRequest(fields[0].trim(), fields[1].trim(),
+                                fields[2].trim(), fields[3].trim());
+    }
+
+    /**
+     * Reads a flat JSON object whose values are strings or numbers, keeping only
+     * the four request keys
+     */
+    private static QuoteRequest parseJsonRequest(String text) {
+        String[] values = new String[4];
+        int[] position = {1};
+        skipWhitespace(text, position);
+        if (peek(text, position) != '}') {
+            while (true) {
+                skipWhitespace(text, position);
+                String key = readJsonString(text, position);
+                skipWhitespace(text, position);
+                expect(text, position, ':');
+                skipWhitespace(text, position);
+                String value = peek(text, position) == '"' ?
+                        readJsonString(text, position) : readJsonLiteral(text, position);
+                int index = REQUEST_KEYS.indexOf(key);
+                if (index >= 0) {
+                    values[index] = value;
+                }
+                skipWhitespace(text, position);
+                if (peek(text, position) == ',') {
+                    position[0]++;
+                    continue;
+                }
+                break;
+            }
+        }
+        expect(text, position, '}');
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                throw new IllegalArgumentException("Missing field: " + REQUEST_KEYS.get(i));
+            }
+        }
+        return new QuoteRequest(values[0], values[1], values[2], values[3]);
+    }
+
+    private static char peek(String text, int[] position) {
+        if (position[0] >= text.length()) {
+            throw new IllegalArgumentException("Malformed JSON request");
+        }
+        return text.charAt(position[0]);
+    }
+
+    private static void expect(String text, int[] position, char c) {
+        if (peek(text, position) != c) {
+            throw new IllegalArgumentException("Malformed JSON request");
+        }
+        position[0]++;
+    }
+
+    private static void skipWhitespace(String text, int[] position) {
+        while (position[0] < text.length() && Character.isWhitespace(text.charAt(position[0]))) {
+            position[0]++;
+        }
+    }
+
+    private static String readJsonString(String text, int[] position) {
+        expect(text, position, '"');
+        StringBuilder value = new StringBuilder();
+        char c;
+        while ((c = peek(text, position)) != '"') {
+            position[0]++;
+            if (c == '\\') {
+                char escaped = peek(text, position);
+                position[0]++;
+                switch (escaped) {
+                    case 'n': value.append('\n'); break;
+                    case 't': value.append('\t'); break;
+                    case 'r': value.append('\r'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        if (position[0] + 4 > text.length()) {
+                            throw new IllegalArgumentException("Malformed JSON request");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(
+                                    text.substring(position[0], position[0] + 4), 16));
+                        }
+                        catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Malformed JSON request");
+                        }
+                        position[0] += 4;
+                        break;
+                    default: value.append(escaped); // \" \\ and \/
+                }
+            }
+            else {
+                value.append(c);
+            }
+        }
+        position[0]++;
+        return value.toString();
+    }
+
+    private static String readJsonLiteral(String text, int[] position) {
+        int start = position[0];
+        while (position[0] < text.length() && text.charAt(position[0]) != ',' &&
+               text.charAt(position[0]) != '}' && !Character.isWhitespace(text.charAt(position[0]))) {
+            position[0]++;
+        }
+        if (start == position[0]) {
+            throw new IllegalArgumentException("Malformed JSON request");
+        }
+        return text.substring(start, position[0]);
+    }
+
+    /**
+     * Writes a result as CSV: OK followed by every agreement field, or ERROR
+     * followed by the input line number and the reason
+     */
+    static void appendCsvResult(StringBuilder out, long lineNumber,
+                                RentalAgreement agreement, String error) {
+        if (agreement == null) {
+            out.append("ERROR,").append(lineNumber).append(',').append(error);
+            return;
+        }
+        long start = Metrics.start();
+        out.append("OK,").append(agreement.getToolCode())
+           .append(',').append(agreement.getToolTypeName())
+           .append(',').append(agreement.getToolBrand())
+           .append(',').append(agreement.getRentalDays())
+           .append(',').append(agreement.getCheckoutDate())
+           .append(',').append(agreement.getReturnDate())
+           .append(',').append(agreement.getDailyCharge())
+           .append(',').append(agreement.getChargeDays())
+           .append(',').append(agreement.getPreDiscountCharge())
+           .append(',').append(agreement.getPercentDiscount())
+           .append(',').append(agreement.getDiscountAmount())
+           .append(',').append(agreement.getFinalCharge());
+        Metrics.record(Metrics.Stage.RENDERING, start);
+    }
+
+    /**
+     * Writes a result as a single line JSON object
+     */
+    static void appendJsonResult(StringBuilder out, long lineNumber,
+                                 RentalAgreement agreement, String error) {
+        if (agreement == null) {
+            out.append("{\"status\":\"error\",\"line\":").append(lineNumber)
+               .append(",\"error\":");
+            appendJsonString(out, error);
+            out.append('}');
+            return;
+        }
+        out.append("{\"status\":\"ok\",");
+        appendJsonAgreement(out, agreement);
+        out.append('}');
+    }
+
+    /**
+     * Writes every agreement field as JSON members (without the enclosing braces)
+     * so callers can embed them in their own objects
+     */
+    static void appendJsonAgreement(StringBuilder out, RentalAgreement agreement) {
+        long start = Metrics.start();
+        out.append("\"toolCode\":");
+        appendJsonString(out, agreement.getToolCode());
+        out.append(",\"toolType\":");
+        appendJsonString(out, agreement.getToolTypeName());
+        out.append(",\"toolBrand\":");
+        appendJsonString(out, agreement.getToolBrand());
+        out.append(",\"rentalDays\":").append(agreement.getRentalDays());
+        out.append(",\"checkoutDate\":");
+        appendJsonString(out, agreement.getCheckoutDate());
+        out.append(",\"dueDate\":");
+        appendJsonString(out, agreement.getReturnDate());
+        out.append(",\"dailyCharge\":").append(agreement.getDailyCharge())
+           .append(",\"chargeDays\":").append(agreement.getChargeDays())
+           .append(",\"preDiscountCharge\":").append(agreement.getPreDiscountCharge())
+           .append(",\"percentDiscount\":").append(agreement.getPercentDiscount())
+           .append(",\"discountAmount\":").append(agreement.getDiscountAmount())
+           .append(",\"finalCharge\":").append(agreement.getFinalCharge());
+        Metrics.record(Metrics.Stage.RENDERING, start);
+    }
+
+    static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * A single non-blank input line, with either its parsed request or the
+     * reason it could not be parsed
+     */
+    static class Line {
+        final long number;
+        final boolean json;
+        final QuoteRequest request;
+        final String error;
+
+        Line(long number, boolean json, QuoteRequest request, String error) {
+            this.number = number;
+            this.json = json;
+            this.request = request;
+            this.error = error;
+        }
+    }
+}
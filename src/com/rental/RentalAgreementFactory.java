@@ -1,10 +1,21 @@
 package com.rental;
 
+import com.rental.objects.PriceMatrix;
+import com.rental.objects.QuoteRequest;
+import com.rental.objects.QuoteResult;
 import com.rental.objects.RentalAgreement;
 import com.rental.objects.Tool;
+import com.rental.objects.ValidationError;
+import com.rental.objects.ValidationResult;
 import com.rental.util.Constants;
+import com.rental.util.DateConverter;
+import com.rental.util.Metrics;
 
-import java.util.Objects;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Factory class responsible for taking the input from the Point-of-Sales
@@ -17,7 +28,14 @@ public class RentalAgreementFactory {
      * Default Constructor
      */
     public RentalAgreementFactory() {
-        toolInventory = ToolInventory.defaultInventory();
+        this(ToolInventory.defaultInventory());
+    }
+
+    /**
+     * @param toolInventory inventory to look tool codes up in
+     */
+    public RentalAgreementFactory(ToolInventory toolInventory) {
+        this.toolInventory = toolInventory;
     }
 
     /**
@@ -32,75 +50,212 @@ public class RentalAgreementFactory {
      */
     public RentalAgreement createRentalAgreement(String toolCode, String checkoutDate,
                                                  String rentalDays, String percentDiscount) {
-        return new RentalAgreement(toolCode,
-                                   getToolFromCode(toolCode),
-                                   checkoutDate, //sanitize this input in the class instead
-                                   parseRentalDays(rentalDays),
-                                   parsePercentDiscount(percentDiscount));
+        return createRentalAgreement(toolCode, checkoutDate, rentalDays, percentDiscount, false);
     }
 
     /**
-     * Helper function that ensure the desired tool to rent exists
+     * Same as above, but the agreement calculates each derived field (return
+     * date, charge days and charges) only when it is first read. Input is still
+     * fully validated here.
      *
-     * @param input string input for the tool code
-     * @return tool object associated with given tool code
+     * @param toolCode code for desired tool to rent
+     * @param checkoutDate date to start rental as a String in mm/dd/yy format
+     * @param rentalDays number of days desired to rent tool
+     * @param percentDiscount percentage discount to be applied to the rental
+     * @return RentalAgreement that populates its fields on demand
      */
-    private Tool getToolFromCode(String input) {
-        // Ensures the tool exists in the system, otherwise set to null
-        Tool tool = toolInventory.getTool(input);
-        if (Objects.isNull(tool)) {
-            System.out.println(Constants.BAD_TOOL_CODE + input);
-            throw new RuntimeException(Constants.BAD_TOOL_CODE + input);
+    public RentalAgreement createLazyRentalAgreement(String toolCode, String checkoutDate,
+                                                     String rentalDays, String percentDiscount) {
+        return createRentalAgreement(toolCode, checkoutDate, rentalDays, percentDiscount, true);
+    }
+
+    private RentalAgreement createRentalAgreement(String toolCode, String checkoutDate,
+                                                  String rentalDays, String percentDiscount,
+                                                  boolean lazy) {
+        ValidationResult input = validate(toolCode, checkoutDate, rentalDays, percentDiscount);
+        if (!input.isValid()) {
+            throw new RuntimeException(input.getErrorMessage());
         }
-        return tool;
+        return new RentalAgreement(input, lazy);
     }
 
     /**
-     * Helper function to ensure a valid rental day count is given
+     * Prices every rental length from 1 day up to maxDays in one pass, for
+     * showing the choice of lengths at checkout. Input is validated the same
+     * as a quote for maxDays days.
      *
-     * @param input string input for number of rental days
-     * @return number of rental days
+     * @param toolCode code for desired tool to rent
+     * @param checkoutDate date to start rental as a String
+     * @param maxDays longest rental length to price
+     * @param percentDiscount percentage discount to be applied to the rental
+     * @return prices of every length up to maxDays
      */
-    private int parseRentalDays(String input) {
-        try {
-            int rentalDays = Integer.parseInt(input);
-            if (rentalDays > 1) {
-                return rentalDays;
-            }
-            else {
-                throw new RuntimeException();
-            }
+    public PriceMatrix createPriceMatrix(String toolCode, String checkoutDate,
+                                         String maxDays, String percentDiscount) {
+        ValidationResult input = validate(toolCode, checkoutDate, maxDays, percentDiscount);
+        if (!input.isValid()) {
+            throw new RuntimeException(input.getErrorMessage());
         }
-        catch (RuntimeException e) {
-            System.out.println(Constants.BAD_RENTAL_DAYS);
-            throw new RuntimeException(Constants.BAD_RENTAL_DAYS);
+        return new PriceMatrix(input);
+    }
+
+    /**
+     * Validates every field of a quote without throwing, so all problems with
+     * the input are reported together
+     *
+     * @param toolCode code for desired tool to rent
+     * @param checkoutDate date to start rental as a String
+     * @param rentalDays number of days desired to rent tool
+     * @param percentDiscount percentage discount to be applied to the rental
+     * @return new result holding the sanitized input or the errors found
+     */
+    public ValidationResult validate(String toolCode, String checkoutDate,
+                                     String rentalDays, String percentDiscount) {
+        return validate(toolCode, checkoutDate, rentalDays, percentDiscount, new ValidationResult());
+    }
+
+    /**
+     * Same as above, but fills in a caller supplied result so validating
+     * valid input allocates nothing
+     *
+     * @param toolCode code for desired tool to rent
+     * @param checkoutDate date to start rental as a String
+     * @param rentalDays number of days desired to rent tool
+     * @param percentDiscount percentage discount to be applied to the rental
+     * @param result result to overwrite
+     * @return the given result, holding the sanitized input or the errors found
+     */
+    public ValidationResult validate(String toolCode, String checkoutDate, String rentalDays,
+                                     String percentDiscount, ValidationResult result) {
+        long start = Metrics.start();
+        int errors = 0;
+
+        // Ensures the tool exists in the system
+        Tool tool = toolCode == null ? null : toolInventory.getTool(toolCode);
+        if (tool == null) {
+            errors |= ValidationError.UNKNOWN_TOOL_CODE.getBit();
+        }
+
+        int days = parseRentalDays(rentalDays);
+        if (days < 0) {
+            errors |= ValidationError.BAD_RENTAL_DAYS.getBit();
+        }
+
+        int discount = parsePercentDiscount(percentDiscount);
+        if (discount < 0) {
+            errors |= ValidationError.BAD_PERCENT_DISCOUNT.getBit();
         }
+
+        int checkoutDay = checkoutDate == null ?
+                DateConverter.INVALID_DATE_FORMAT : DateConverter.parseEpochDay(checkoutDate);
+        if (DateConverter.isParseError(checkoutDay)) {
+            errors |= ValidationError.fromDateError(checkoutDay).getBit();
+        }
+
+        result.set(toolCode, tool, checkoutDate, checkoutDay, days, discount, errors);
+        Metrics.record(Metrics.Stage.VALIDATION, start);
+        return result;
+    }
+
+    /**
+     * Prices a batch of requests in parallel across all available cores. A
+     * request with invalid input produces a failed QuoteResult rather than
+     * aborting the rest of the batch.
+     *
+     * The inventory is only ever read while quoting, and is fully populated
+     * before this factory is published, so it is safe to share between threads.
+     *
+     * @param requests raw inputs to price
+     * @return one result per request, in the same order as the input
+     */
+    public List<QuoteResult> createRentalAgreements(Collection<QuoteRequest> requests) {
+        QuoteRequest[] input = requests.toArray(new QuoteRequest[0]);
+        QuoteResult[] results = new QuoteResult[input.length];
+        // Each task writes its own slot, and the join at the end publishes them all
+        IntStream.range(0, input.length).parallel()
+                 .forEach(i -> results[i] = quote(input[i]));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Prices a stream of requests in parallel. The returned stream keeps the
+     * encounter order of the input, so collecting it (or using forEachOrdered)
+     * yields results in input order.
+     *
+     * @param requests raw inputs to price
+     * @return parallel stream of results, one per request
+     */
+    public Stream<QuoteResult> createRentalAgreements(Stream<QuoteRequest> requests) {
+        return requests.parallel().map(this::quote);
+    }
+
+    /**
+     * Prices a single request, capturing invalid input as a failed result
+     *
+     * @param request raw input to price
+     * @return result holding either the agreement or the error message
+     */
+    public QuoteResult quote(QuoteRequest request) {
+        ValidationResult input = validate(request.getToolCode(), request.getCheckoutDate(),
+                                          request.getRentalDays(), request.getPercentDiscount());
+        if (!input.isValid()) {
+            return QuoteResult.failure(input.getErrorMessage());
+        }
+        return QuoteResult.success(new RentalAgreement(input, false));
+    }
+
+    /**
+     * Helper function to ensure a valid rental day count is given
+     *
+     * @param input string input for number of rental days
+     * @return number of rental days, or -1 if the input is invalid
+     */
+    private static int parseRentalDays(String input) {
+        int rentalDays = parseWholeNumber(input, 0, input == null ? 0 : input.length());
+        return rentalDays > 1 && rentalDays <= Constants.MAX_RENTAL_DAYS ? rentalDays : -1;
     }
 
     /**
      * Ensures input contains %, and is in the valid range 0-100 (inclusive)
      *
      * @param input string input for percent discount
-     * @return discount percent stored as a whole number
+     * @return discount percent stored as a whole number, or -1 if the input is invalid
      */
-    private int parsePercentDiscount(String input) {
-        try {
-            if (input.endsWith("%")) {
-                // Removes the % sign
-                int percentDiscount =
-                        Integer.parseInt(input.substring(0, input.length() - 1));
-                // Ensures value falls within valid discount range
-                if (percentDiscount >= 0 && percentDiscount <= 100) {
-                    return percentDiscount;
-                } else {
-                    throw new RuntimeException();
-                }
-            } else {
-                throw new RuntimeException();
+    private static int parsePercentDiscount(String input) {
+        if (input == null || !input.endsWith("%")) {
+            return -1;
+        }
+        // Ignores the % sign
+        int percentDiscount = parseWholeNumber(input, 0, input.length() - 1);
+        // Ensures value falls within valid discount range
+        return percentDiscount <= 100 ? percentDiscount : -1;
+    }
+
+    /**
+     * Parses a non-negative whole number (with an optional + sign) from part of
+     * a String without throwing or allocating
+     *
+     * @return the number, or -1 if the characters aren't a number that fits in an int
+     */
+    private static int parseWholeNumber(String input, int start, int end) {
+        if (input == null) {
+            return -1;
+        }
+        int position = start < end && input.charAt(start) == '+' ? start + 1 : start;
+        if (position == end) {
+            return -1;
+        }
+        long value = 0;
+        for (; position < end; position++) {
+            char c = input.charAt(position);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                return -1;
             }
-        } catch (RuntimeException e) {
-            System.out.println(Constants.BAD_PERCENT_DISCOUNT);
-            throw new RuntimeException(Constants.BAD_PERCENT_DISCOUNT);
         }
+        return (int) value;
     }
 }
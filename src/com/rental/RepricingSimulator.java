@@ -0,0 +1,323 @@
+package com.rental;
+
+import com.rental.objects.AgreementRecord;
+import com.rental.objects.RateTable;
+import com.rental.objects.RentalAgreement;
+import com.rental.objects.ToolType;
+import com.rental.util.ChargeDayCalculator;
+import com.rental.util.Money;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * What-if pricing of historical agreements: reprices every agreement under a
+ * candidate RateTable and totals the change in revenue by tool type.
+ *
+ * What an agreement is charged depends only on its tool type, its discount
+ * and how many weekdays, weekend days and holidays its rental period covers,
+ * so only that is kept, in primitive columns of BLOCK_SIZE agreements each.
+ * The breakdown of days is worked out once when an agreement is added, and a
+ * simulation is just the pricing arithmetic, run over blocks in parallel on
+ * every core. Tens of millions of agreements reprice in well under a second.
+ *
+ * Agreements are added by one thread at a time, while any number of threads
+ * can run simulations, each covering every agreement added before it started.
+ */
+public class RepricingSimulator {
+    // Agreements per block of columns, and per task of a simulation
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final ToolType[] TOOL_TYPES = ToolType.values();
+
+    // Per tool type totals, laid out as TOTALS longs per type
+    private static final int AGREEMENTS = 0;
+    private static final int BASELINE_CHARGE_DAYS = 1;
+    private static final int CHARGE_DAYS = 2;
+    private static final int BASELINE_FINAL_CHARGE = 3;
+    private static final int FINAL_CHARGE = 4;
+    private static final int TOTALS = 5;
+
+    private final List<Block> blocks = new ArrayList<>(); // guarded by this
+    /* Number of agreements added. Written after an agreement's columns, so a
+       simulation that reads it sees every column of every agreement below it */
+    private volatile int size;
+
+    /**
+     * Adds an agreement, working out the breakdown of its rental period
+     *
+     * @param toolType type of tool rented
+     * @param checkoutDay epoch day the tool was checked out
+     * @param rentalDays number of days the tool was rented for
+     * @param percentDiscount discount given, 0-100
+     */
+    public synchronized void add(ToolType toolType, int checkoutDay, int rentalDays,
+                                 int percentDiscount) {
+        if (percentDiscount < 0 || percentDiscount > 100) {
+            throw new IllegalArgumentException("Invalid percent discount: " + percentDiscount);
+        }
+        ChargeDayCalculator.Days days = ChargeDayCalculator.calculateChargeDays(checkoutDay, rentalDays);
+        int row = size;
+        if (row % BLOCK_SIZE == 0) {
+            blocks.add(new Block());
+        }
+        blocks.get(row / BLOCK_SIZE).set(row % BLOCK_SIZE, toolType, days, percentDiscount);
+        size = row + 1;
+    }
+
+    public void add(RentalAgreement agreement) {
+        add(agreement.getToolType(), agreement.getCheckoutDay(), agreement.getRentalDays(),
+            agreement.getPercentDiscount());
+    }
+
+    public void add(AgreementRecord record) {
+        add(record.getToolType(), record.getCheckoutDay(), record.getRentalDays(),
+            record.getPercentDiscount());
+    }
+
+    /**
+     * Adds every agreement recorded in a journal
+     *
+     * @param journal journal to replay
+     * @return number of agreements added
+     */
+    public int addAll(AgreementJournal journal) {
+        AgreementRecord record = new AgreementRecord();
+        int added = 0;
+        for (Iterator<byte[]> records = journal.replay(); records.hasNext(); added++) {
+            add(record.wrap(ByteBuffer.wrap(records.next()), 0));
+        }
+        return added;
+    }
+
+    /**
+     * @return number of agreements added
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reprices every agreement under candidate rates, against the rates tools
+     * are currently charged at
+     *
+     * @param candidate rates to try
+     * @return totals under both rates, by tool type
+     */
+    public Report simulate(RateTable candidate) {
+        return simulate(RateTable.current(), candidate);
+    }
+
+    /**
+     * Reprices every agreement under two sets of rates
+     *
+     * @param baseline rates to compare against
+     * @param candidate rates to try
+     * @return totals under both rates, by tool type
+     */
+    public Report simulate(RateTable baseline, RateTable candidate) {
+        int agreements = size;
+        List<Block> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(blocks);
+        }
+        Rates baselineRates = new Rates(baseline);
+        Rates candidateRates = new Rates(candidate);
+        long[] totals = IntStream.range(0, (agreements + BLOCK_SIZE - 1) / BLOCK_SIZE).parallel()
+                .mapToObj(block -> snapshot.get(block).reprice(
+                        Math.min(BLOCK_SIZE, agreements - block * BLOCK_SIZE),
+                        baselineRates, candidateRates))
+                .reduce(RepricingSimulator::sum)
+                .orElseGet(() -> new long[TOOL_TYPES.length * TOTALS]);
+
+        List<Totals> byType = new ArrayList<>();
+        for (ToolType toolType : TOOL_TYPES) {
+            int i = toolType.ordinal() * TOTALS;
+            byType.add(new Totals(toolType, totals[i + AGREEMENTS], totals[i + BASELINE_CHARGE_DAYS],
+                                  totals[i + CHARGE_DAYS], totals[i + BASELINE_FINAL_CHARGE],
+                                  totals[i + FINAL_CHARGE]));
+        }
+        return new Report(byType);
+    }
+
+    private static long[] sum(long[] left, long[] right) {
+        for (int i = 0; i < left.length; i++) {
+            left[i] += right[i];
+        }
+        return left;
+    }
+
+    /**
+     * A rate table unpacked into masks, so pricing an agreement doesn't branch
+     */
+    private static class Rates {
+        final long[] dailyChargeCents = new long[TOOL_TYPES.length];
+        final int[] weekdayMask = new int[TOOL_TYPES.length]; // -1 if charged, else 0
+        final int[] weekendMask = new int[TOOL_TYPES.length];
+        final int[] holidayMask = new int[TOOL_TYPES.length];
+
+        Rates(RateTable table) {
+            for (ToolType toolType : TOOL_TYPES) {
+                int i = toolType.ordinal();
+                dailyChargeCents[i] = table.getDailyChargeCents(toolType);
+                weekdayMask[i] = table.isChargeWeekday(toolType) ? -1 : 0;
+                weekendMask[i] = table.isChargeWeekend(toolType) ? -1 : 0;
+                holidayMask[i] = table.isChargeHoliday(toolType) ? -1 : 0;
+            }
+        }
+
+        int chargeDays(int type, int weekdays, int weekends, int holidays) {
+            return (weekdays & weekdayMask[type]) + (weekends & weekendMask[type]) +
+                   (holidays & holidayMask[type]);
+        }
+
+        long finalChargeCents(int type, int chargeDays, int percentDiscount) {
+            long preDiscountCents = dailyChargeCents[type] * chargeDays;
+            return preDiscountCents - Money.discountCents(
+                    preDiscountCents, percentDiscount * Money.BASIS_POINTS_PER_PERCENT);
+        }
+    }
+
+    /**
+     * Columns of up to BLOCK_SIZE agreements
+     */
+    private static class Block {
+        final int[] weekdays = new int[BLOCK_SIZE];
+        final int[] weekends = new int[BLOCK_SIZE];
+        final int[] holidays = new int[BLOCK_SIZE];
+        final byte[] toolTypes = new byte[BLOCK_SIZE];
+        final byte[] percentDiscounts = new byte[BLOCK_SIZE];
+
+        void set(int row, ToolType toolType, ChargeDayCalculator.Days days, int percentDiscount) {
+            weekdays[row] = days.getWeekdays();
+            weekends[row] = days.getWeekends();
+            holidays[row] = days.getHolidays();
+            toolTypes[row] = (byte) toolType.ordinal();
+            percentDiscounts[row] = (byte) percentDiscount;
+        }
+
+        /**
+         * Prices the first rows of the block under both rates
+         */
+        long[] reprice(int rows, Rates baseline, Rates candidate) {
+            long[] totals = new long[TOOL_TYPES.length * TOTALS];
+            for (int row = 0; row < rows; row++) {
+                int type = toolTypes[row];
+                int percentDiscount = percentDiscounts[row];
+                int baselineDays = baseline.chargeDays(type, weekdays[row], weekends[row], holidays[row]);
+                int candidateDays = candidate.chargeDays(type, weekdays[row], weekends[row], holidays[row]);
+                int i = type * TOTALS;
+                totals[i + AGREEMENTS]++;
+                totals[i + BASELINE_CHARGE_DAYS] += baselineDays;
+                totals[i + CHARGE_DAYS] += candidateDays;
+                totals[i + BASELINE_FINAL_CHARGE] +=
+                        baseline.finalChargeCents(type, baselineDays, percentDiscount);
+                totals[i + FINAL_CHARGE] +=
+                        candidate.finalChargeCents(type, candidateDays, percentDiscount);
+            }
+            return totals;
+        }
+    }
+
+    /**
+     * Totals of a simulation for one tool type (or every tool type), under
+     * the baseline and the candidate rates
+     */
+    public static class Totals {
+        private final ToolType toolType;
+        private final long agreements;
+        private final long baselineChargeDays;
+        private final long chargeDays;
+        private final long baselineFinalChargeCents;
+        private final long finalChargeCents;
+
+        Totals(ToolType toolType, long agreements, long baselineChargeDays, long chargeDays,
+               long baselineFinalChargeCents, long finalChargeCents) {
+            this.toolType = toolType;
+            this.agreements = agreements;
+            this.baselineChargeDays = baselineChargeDays;
+            this.chargeDays = chargeDays;
+            this.baselineFinalChargeCents = baselineFinalChargeCents;
+            this.finalChargeCents = finalChargeCents;
+        }
+
+        /**
+         * @return the tool type totalled, or null for totals of every type
+         */
+        public ToolType getToolType() {
+            return toolType;
+        }
+
+        public long getAgreements() {
+            return agreements;
+        }
+
+        public long getBaselineChargeDays() {
+            return baselineChargeDays;
+        }
+
+        public long getChargeDays() {
+            return chargeDays;
+        }
+
+        public long getBaselineFinalChargeCents() {
+            return baselineFinalChargeCents;
+        }
+
+        public long getFinalChargeCents() {
+            return finalChargeCents;
+        }
+
+        /**
+         * @return change in revenue under the candidate rates, in cents
+         */
+        public long getFinalChargeDeltaCents() {
+            return finalChargeCents - baselineFinalChargeCents;
+        }
+    }
+
+    /**
+     * Result of a simulation: totals for each tool type, and overall
+     */
+    public static class Report {
+        private final List<Totals> totals;
+
+        Report(List<Totals> totals) {
+            this.totals = Collections.unmodifiableList(totals);
+        }
+
+        /**
+         * @return totals for every tool type, in ToolType order
+         */
+        public List<Totals> getTotals() {
+            return totals;
+        }
+
+        public Totals getTotals(ToolType toolType) {
+            return totals.get(toolType.ordinal());
+        }
+
+        /**
+         * @return totals across every tool type
+         */
+        public Totals getTotal() {
+            long agreements = 0;
+            long baselineChargeDays = 0;
+            long chargeDays = 0;
+            long baselineFinalChargeCents = 0;
+            long finalChargeCents = 0;
+            for (Totals type : totals) {
+                agreements += type.agreements;
+                baselineChargeDays += type.baselineChargeDays;
+                chargeDays += type.chargeDays;
+                baselineFinalChargeCents += type.baselineFinalChargeCents;
+                finalChargeCents += type.finalChargeCents;
+            }
+            return new Totals(null, agreements, baselineChargeDays, chargeDays,
+                              baselineFinalChargeCents, finalChargeCents);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.rental;
+
+import com.rental.objects.RentalAgreement;
+import com.rental.objects.Reservation;
+import com.rental.util.Constants;
+import com.rental.util.ToolCodeIndex;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Future bookings of tools, kept per unit so that no unit is ever booked for
+ * two overlapping ranges of days. A tool is given the number of units the
+ * inventory says the store owns the first time it is booked.
+ *
+ * Each unit's bookings are a concurrent skip list of (due day, first day)
+ * pairs packed into a long. Bookings of a unit never overlap, so ordering them
+ * by due day also orders them by first day, and whether a range is free takes
+ * a single search: the first booking due after the range starts must also
+ * start after it ends. Checking a unit is O(log n) in its bookings and never
+ * locks; booking or cancelling locks that unit, to check and change it
+ * atomically.
+ *
+ * Checking thousands of units one by one would still be slow, so each tool
+ * also keeps a bitmap per day of the units booked that day, in an array
+ * indexed by day. Finding free units ORs the bitmaps of the days in a range,
+ * 64 units to a word, and counting them is a popcount of what is left clear.
+ * A booking marks at most its first MAX_INDEXED_DAYS days, so the bitmaps are
+ * exact for ranges up to that long, apart from units holding a longer
+ * booking; those units, and every unit offered for a longer range, are
+ * confirmed against their skip lists. Booking a unit found free still checks
+ * it again under its lock, so a unit is never booked twice.
+ *
+ * Bits are set and cleared without locking. The first booking of a day has to
+ * create that day's bitmap, and possibly grow the array, so it also takes the
+ * tool's lock for that; any later booking or cancelling of the day doesn't.
+ * Bookings of different units therefore only contend while they are booking
+ * days nothing has been booked on before.
+ */
+public class ReservationBook {
+    // Most days of a single booking marked in the day bitmaps
+    private static final int MAX_INDEXED_DAYS = 366;
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle BITMAPS = MethodHandles.arrayElementVarHandle(long[][].class);
+
+    private final ToolInventory inventory;
+    private final ToolCodeIndex<Schedule> schedules = new ToolCodeIndex<>();
+
+    /**
+     * @param inventory inventory giving the number of units of each tool
+     */
+    public ReservationBook(ToolInventory inventory) {
+        this.inventory = inventory;
+    }
+
+    /**
+     * Books the first unit of a tool that is free for a range
+     *
+     * @param toolCode tool to book
+     * @param fromDay first epoch day of the booking
+     * @param dueDay epoch day the unit is due back (not itself booked)
+     * @return the booking, or null if every unit is booked for part of the range
+     */
+    public Reservation reserve(String toolCode, int fromDay, int dueDay) {
+        checkRange(fromDay, dueDay);
+        Schedule schedule = schedule(toolCode);
+        int unit = -1;
+        // A unit found free can be booked by another thread before this one
+        do {
+            unit = schedule.nextFreeUnit(unit + 1, fromDay, dueDay);
+        } while (unit >= 0 && !schedule.reserve(unit, fromDay, dueDay));
+        return unit < 0 ? null : new Reservation(toolCode, unit, fromDay, dueDay);
+    }
+
+    /**
+     * Books a unit for the days an agreement covers, from checkout up to the
+     * due date
+     *
+     * @param agreement agreement to book a unit for
+     * @return the booking, or null if every unit is booked for part of the range
+     */
+    public Reservation reserve(RentalAgreement agreement) {
+        return reserve(agreement.getToolCode(), agreement.getCheckoutDay(),
+                       agreement.getCheckoutDay() + agreement.getRentalDays());
+    }
+
+    /**
+     * Books a particular unit of a tool
+     *
+     * @param toolCode tool to book
+     * @param unit index of the unit, from 0 up to the tool's unit count
+     * @param fromDay first epoch day of the booking
+     * @param dueDay epoch day the unit is due back (not itself booked)
+     * @return the booking, or null if the unit is booked for part of the range
+     */
+    public Reservation reserve(String toolCode, int unit, int fromDay, int dueDay) {
+        checkRange(fromDay, dueDay);
+        return schedule(toolCode, unit).reserve(unit, fromDay, dueDay) ?
+               new Reservation(toolCode, unit, fromDay, dueDay) : null;
+    }
+
+    /**
+     * @param reservation booking to cancel
+     * @return whether the booking was cancelled, false if it had been already
+     */
+    public boolean cancel(Reservation reservation) {
+        return schedule(reservation.getToolCode(), reservation.getUnit()).cancel(
+                reservation.getUnit(), reservation.getFromDay(), reservation.getDueDay());
+    }
+
+    /**
+     * @param toolCode tool in question
+     * @param unit index of the unit, from 0 up to the tool's unit count
+     * @param fromDay first epoch day of the range
+     * @param dueDay epoch day just past the end of the range
+     * @return whether the unit is free for the whole range
+     */
+    public boolean isFree(String toolCode, int unit, int fromDay, int dueDay) {
+        checkRange(fromDay, dueDay);
+        return schedule(toolCode, unit).units[unit].isFree(fromDay, dueDay);
+    }
+
+    /**
+     * @param toolCode tool in question
+     * @param fromDay first epoch day of the range
+     * @param dueDay epoch day just past the end of the range
+     * @return index of the first unit free for the whole range, or -1 if none is
+     */
+    public int firstFreeUnit(String toolCode, int fromDay, int dueDay) {
+        checkRange(fromDay, dueDay);
+        return schedule(toolCode).nextFreeUnit(0, fromDay, dueDay);
+    }
+
+    /**
+     * @param toolCode tool in question
+     * @param fromDay first epoch day of the range
+     * @param dueDay epoch day just past the end of the range
+     * @return number of units free for the whole range
+     */
+    public int countFreeUnits(String toolCode, int fromDay, int dueDay) {
+        checkRange(fromDay, dueDay);
+        return schedule(toolCode).countFreeUnits(fromDay, dueDay);
+    }
+
+    /**
+     * @param toolCode tool in question
+     * @param unit index of the unit, from 0 up to the tool's unit count
+     * @return every booking of the unit, in date order
+     */
+    public List<Reservation> getReservations(String toolCode, int unit) {
+        List<Reservation> reservations = new ArrayList<>();
+        for (long key : schedule(toolCode, unit).units[unit].bookings) {
+            reservations.add(new Reservation(toolCode, unit, Unit.fromDay(key), Unit.dueDay(key)));
+        }
+        return reservations;
+    }
+
+    private static void checkRange(int fromDay, int dueDay) {
+        if (dueDay <= fromDay) {
+            throw new IllegalArgumentException(Constants.BAD_RENTAL_DAYS);
+        }
+    }
+
+    private Schedule schedule(String toolCode, int unit) {
+        Schedule schedule = schedule(toolCode);
+        if (unit < 0 || unit >= schedule.units.length) {
+            throw new IllegalArgumentException("No unit " + unit + " of " + toolCode);
+        }
+        return schedule;
+    }
+
+    /**
+     * Finds the schedule of a tool, creating it the first time it is booked
+     */
+    private Schedule schedule(String toolCode) {
+        Schedule schedule = schedules.get(toolCode);
+        if (schedule == null) {
+            int count = inventory.getTotalUnits(toolCode);
+            if (count == 0) {
+                throw new RuntimeException(Constants.BAD_TOOL_CODE + toolCode);
+            }
+            Schedule created = new Schedule(count);
+            schedule = schedules.putIfAbsent(toolCode, created);
+            if (schedule == null) {
+                schedule = created;
+            }
+        }
+        return schedule;
+    }
+
+    /**
+     * Every unit of one tool, plus the bitmaps of which units are booked each day
+     */
+    private static final class Schedule {
+        final Unit[] units;
+        final int words; // longs in each day's bitmap
+        // Units with a booking longer than MAX_INDEXED_DAYS, whose last days aren't marked
+        final long[] longBooked;
+        private volatile DayIndex days = new DayIndex(0, new long[0][]); // written under this
+
+        Schedule(int count) {
+            units = new Unit[count];
+            for (int i = 0; i < count; i++) {
+                units[i] = new Unit();
+            }
+            words = (count + Long.SIZE - 1) / Long.SIZE;
+            longBooked = new long[words];
+        }
+
+        /**
+         * @return the first unit from the given one on that is free for the
+         *         range, or -1 if there isn't one
+         */
+        int nextFreeUnit(int firstUnit, int fromDay, int dueDay) {
+            boolean exact = isIndexed(fromDay, dueDay);
+            DayIndex index = days;
+            for (int word = firstUnit / Long.SIZE; word < words; word++) {
+                long free = freeUnits(index, word, fromDay, dueDay);
+                if (word == firstUnit / Long.SIZE) {
+                    free &= -1L << firstUnit;
+                }
+                for (; free != 0; free &= free - 1) {
+                    int unit = word * Long.SIZE + Long.numberOfTrailingZeros(free);
+                    if (isFree(unit, fromDay, dueDay, exact)) {
+                        return unit;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        int countFreeUnits(int fromDay, int dueDay) {
+            boolean exact = isIndexed(fromDay, dueDay);
+            DayIndex index = days;
+            int count = 0;
+            for (int word = 0; word < words; word++) {
+                long free = freeUnits(index, word, fromDay, dueDay);
+                long unsure = free;
+                if (exact) {
+                    unsure &= (long) WORDS.getAcquire(longBooked, word);
+                    count += Long.bitCount(free & ~unsure);
+                }
+                for (; unsure != 0; unsure &= unsure - 1) {
+                    if (units[word * Long.SIZE + Long.numberOfTrailingZeros(unsure)].isFree(fromDay,
+                                                                                          dueDay)) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Units of one word not marked booked on any indexed day of the range
+         */
+        private long freeUnits(DayIndex index, int word, int fromDay, int dueDay) {
+            long free = word == words - 1 && units.length % Long.SIZE != 0 ?
+                        (1L << units.length) - 1 : -1L;
+            int lastIndexed = lastIndexedDay(fromDay, dueDay);
+            for (int day = fromDay; day < lastIndexed && free != 0; day++) {
+                long[] booked = index.get(day);
+                if (booked != null) {
+                    free &= ~(long) WORDS.getAcquire(booked, word);
+                }
+            }
+            return free;
+        }
+
+        /**
+         * Confirms a unit the bitmaps show as free. They are exact for ranges
+         * short enough to be fully marked, other than for units with long
+         * bookings, so only those have to be checked against their bookings.
+         */
+        private boolean isFree(int unit, int fromDay, int dueDay, boolean exact) {
+            if (exact && ((long) WORDS.getAcquire(longBooked, unit / Long.SIZE) & 1L << unit) == 0) {
+                return true;
+            }
+            return units[unit].isFree(fromDay, dueDay);
+        }
+
+        boolean reserve(int unit, int fromDay, int dueDay) {
+            synchronized (units[unit]) {
+                if (!units[unit].isFree(fromDay, dueDay)) {
+                    return false;
+                }
+                // Marked long before being booked, so readers never trust the bitmaps for it
+                if (!isIndexed(fromDay, dueDay) && units[unit].longBookings++ == 0) {
+                    WORDS.getAndBitwiseOr(longBooked, unit / Long.SIZE, 1L << unit);
+                }
+                units[unit].bookings.add(Unit.key(fromDay, dueDay));
+                mark(unit, fromDay, dueDay, true);
+                return true;
+            }
+        }
+
+        boolean cancel(int unit, int fromDay, int dueDay) {
+            synchronized (units[unit]) {
+                if (!units[unit].bookings.remove(Unit.key(fromDay, dueDay))) {
+                    return false;
+                }
+                mark(unit, fromDay, dueDay, false);
+                if (!isIndexed(fromDay, dueDay) && --units[unit].longBookings == 0) {
+                    WORDS.getAndBitwiseAnd(longBooked, unit / Long.SIZE, ~(1L << unit));
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Sets or clears a unit's bit for the indexed days of a booking. Only
+         * one booking of a unit covers any day, so a bit is never shared.
+         */
+        private void mark(int unit, int fromDay, int dueDay, boolean booked) {
+            int word = unit / Long.SIZE;
+            long bit = 1L << unit;
+            int lastIndexed = lastIndexedDay(fromDay, dueDay);
+            DayIndex index = days;
+            for (int day = fromDay; day < lastIndexed; day++) {
+                long[] bitmap = index.get(day);
+                if (bitmap == null) {
+                    // First booking of the day (days being cleared were marked when booked)
+                    index = index(day, lastIndexed);
+                    bitmap = index.get(day);
+                }
+                if (booked) {
+                    WORDS.getAndBitwiseOr(bitmap, word, bit);
+                }
+                else {
+                    WORDS.getAndBitwiseAnd(bitmap, word, ~bit);
+                }
+            }
+        }
+
+        /**
+         * Makes sure every day of a range has a bitmap, growing the index to
+         * cover it if need be. Only called for days that had no bitmap, so
+         * the lock is only taken the first time a day is booked.
+         *
+         * @return an index covering the range
+         */
+        private synchronized DayIndex index(int fromDay, int toDay) {
+            DayIndex index = days;
+            // An empty index can start anywhere
+            long first = index.bitmaps.length == 0 ? fromDay : index.firstDay;
+            long end = first + index.bitmaps.length;
+            if (fromDay < first || toDay > end) {
+                // At least double, extending towards the days needed
+                long length = Math.max(Math.max(end, toDay) - Math.min(first, fromDay),
+                                       2L * index.bitmaps.length);
+                long newFirst = fromDay < first ? Math.max(end, toDay) - length : first;
+                long[][] bitmaps = new long[Math.toIntExact(length)][];
+                System.arraycopy(index.bitmaps, 0, bitmaps, (int) (first - newFirst),
+                                 index.bitmaps.length);
+                index = new DayIndex((int) newFirst, bitmaps);
+            }
+            for (int day = fromDay; day < toDay; day++) {
+                if (index.get(day) == null) {
+                    BITMAPS.setRelease(index.bitmaps, day - index.firstDay, new long[words]);
+                }
+            }
+            if (index != days) {
+                days = index;
+            }
+            return index;
+        }
+
+        private static boolean isIndexed(int fromDay, int dueDay) {
+            return (long) dueDay - fromDay <= MAX_INDEXED_DAYS;
+        }
+
+        private static int lastIndexedDay(int fromDay, int dueDay) {
+            return (int) Math.min(dueDay, (long) fromDay + MAX_INDEXED_DAYS);
+        }
+    }
+
+    /**
+     * Bitmaps of booked units for a contiguous range of days, indexed by day
+     * from the first. Bitmaps are shared by every index that replaces this
+     * one as it grows, so a bit set in either is seen through both.
+     */
+    private static final class DayIndex {
+        final int firstDay;
+        final long[][] bitmaps; // null for days no booking has covered yet
+
+        DayIndex(int firstDay, long[][] bitmaps) {
+            this.firstDay = firstDay;
+            this.bitmaps = bitmaps;
+        }
+
+        long[] get(int day) {
+            long offset = (long) day - firstDay;
+            return offset < 0 || offset >= bitmaps.length ? null :
+                   (long[]) BITMAPS.getAcquire(bitmaps, (int) offset);
+        }
+    }
+
+    /**
+     * Bookings of a single unit, as (due day, first day) pairs packed into a
+     * long so the set orders them by due day
+     */
+    private static final class Unit {
+        final ConcurrentSkipListSet<Long> bookings = new ConcurrentSkipListSet<>();
+        int longBookings; // bookings longer than MAX_INDEXED_DAYS (guarded by this)
+
+        static long key(int fromDay, int dueDay) {
+            return (long) dueDay << 32 | (fromDay & 0xFFFFFFFFL);
+        }
+
+        static int fromDay(long key) {
+            return (int) key;
+        }
+
+        static int dueDay(long key) {
+            return (int) (key >> 32);
+        }
+
+        boolean isFree(int fromDay, int dueDay) {
+            // First booking due after the range starts (past every key due on
+            // that day), the only one that can overlap it if no earlier one does
+            Long next = bookings.higher((long) fromDay << 32 | 0xFFFFFFFFL);
+            return next == null || fromDay(next) >= dueDay;
+        }
+    }
+}
@@ -1,17 +1,62 @@
 package com.rental;
 
+import com.rental.objects.AgreementRecord;
+import com.rental.objects.PriceMatrix;
+import com.rental.objects.QuoteRequest;
+import com.rental.objects.QuoteResult;
+import com.rental.objects.RateTable;
+import com.rental.objects.ReceiptRenderer;
 import com.rental.objects.RentalAgreement;
+import com.rental.objects.Reservation;
 import com.rental.objects.Tool;
 import com.rental.objects.ToolType;
+import com.rental.objects.ValidationError;
+import com.rental.objects.ValidationResult;
+import com.rental.util.ChargeCalendar;
+import com.rental.util.ChargeDayCache;
+import com.rental.util.ChargeDayCalculator;
 import com.rental.util.Constants;
+import com.rental.util.DateConverter;
+import com.rental.util.HolidayCalendar;
+import com.rental.util.Metrics;
+import com.rental.util.ToolCodeIndex;
 import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class Tests {
     private static RentalAgreementFactory rentalAgreementFactory;
@@ -205,6 +250,70 @@ public class Tests {
         System.out.println(agreement.toString());
     }
 
+    @Test
+    public void testHolidayOnDueDate() {
+        // Independence Day 2015 is observed on Friday 7/3, the due date
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.JAKR, "7/1/15", "2", "0%");
+        assertEquals("7/3/15", agreement.getReturnDate());
+        assertEquals(Integer.valueOf(1), agreement.getChargeDays());
+        assertEquals(BigDecimal.valueOf(2.99), agreement.getFinalCharge());
+    }
+
+    @Test
+    public void testReturnDateEndOfMonth() {
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.LADW, "7/28/20", "3", "0%");
+        assertEquals("7/31/20", agreement.getReturnDate());
+        assertEquals(Integer.valueOf(3), agreement.getChargeDays());
+    }
+
+    @Test
+    public void testReturnDateLeapDay() {
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.LADW, "2/27/20", "2", "0%");
+        assertEquals("2/29/20", agreement.getReturnDate());
+        assertEquals(Integer.valueOf(2), agreement.getChargeDays());
+    }
+
+    @Test
+    public void testShortYearFormat() {
+        // 2 digit years keep their leading zero, and years past 2099 are written in full
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.LADW, "1/3/05", "2", "0%");
+        assertEquals("1/5/05", agreement.getReturnDate());
+        assertEquals(DateConverter.parseEpochDay("1/5/05"),
+                     DateConverter.parseEpochDay(agreement.getReturnDate()));
+        assertEquals("12/31/99", DateConverter.formatDate(DateConverter.toEpochDay(2099, 12, 31)));
+        assertEquals("1/1/2100", DateConverter.formatDate(DateConverter.toEpochDay(2100, 1, 1)));
+    }
+
+    @Test
+    public void testFourDigitYear() {
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.LADW, "7/2/2020", "3", "10%");
+        assertEquals("7/5/2020", agreement.getReturnDate());
+        assertEquals(BigDecimal.valueOf(3.58), agreement.getFinalCharge());
+    }
+
+    @Test
+    public void testIsoDate() {
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.LADW, "2020-12-30", "33", "0%");
+        assertEquals("2021-02-01", agreement.getReturnDate());
+        assertEquals(Integer.valueOf(33), agreement.getChargeDays());
+    }
+
+    @Test
+    public void testParseErrorCodes() {
+        assertEquals(DateConverter.INVALID_DATE_FORMAT, DateConverter.parseEpochDay("1/15"));
+        assertEquals(DateConverter.INVALID_MONTH, DateConverter.parseEpochDay("13/1/15"));
+        assertEquals(DateConverter.INVALID_DAY, DateConverter.parseEpochDay("4/31/2015"));
+        assertEquals(DateConverter.INVALID_YEAR, DateConverter.parseEpochDay("1999-01-01"));
+        assertEquals(DateConverter.INVALID_LEAP_DAY, DateConverter.parseEpochDay("2100-02-29"));
+        assertEquals(DateConverter.toEpochDay(2015, 9, 3), DateConverter.parseEpochDay("09/03/15"));
+    }
+
     @Test
     public void testBadToolCode() {
         expectedException.expect(RuntimeException.class);
@@ -269,6 +378,91 @@ public class Tests {
                 Constants.JAKR, "2/29/15", "5", "5%");
     }
 
+    @Test
+    public void testChargesInCents() {
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.CHNS, "7/2/15", "5", "25%");
+        assertEquals(447, agreement.getPreDiscountChargeCents());
+        assertEquals(112, agreement.getDiscountAmountCents());
+        assertEquals(335, agreement.getFinalChargeCents());
+        assertEquals(149, ToolType.CHAINSAW.getDailyChargeCents());
+    }
+
+    @Test
+    public void testLazyAgreement() {
+        RentalAgreement agreement = rentalAgreementFactory.createLazyRentalAgreement(
+                Constants.JAKR, "7/2/20", "4", "50%");
+        assertEquals(BigDecimal.valueOf(1.49), agreement.getFinalCharge());
+        assertEquals(Integer.valueOf(1), agreement.getChargeDays());
+        assertEquals(BigDecimal.valueOf(1.5).setScale(2), agreement.getDiscountAmount());
+        assertEquals("7/6/20", agreement.getReturnDate());
+    }
+
+    @Test
+    public void testLazyAgreementValidatesDate() {
+        expectedException.expect(RuntimeException.class);
+        expectedException.expectMessage(Constants.INVALID_LEAP_DAY);
+        rentalAgreementFactory.createLazyRentalAgreement(Constants.JAKR, "2/29/15", "5", "5%");
+    }
+
+    @Test
+    public void testValidationReportsAllErrors() {
+        ValidationResult result = rentalAgreementFactory.validate("TEST", "2/29/15", "1", "5");
+        assertFalse(result.isValid());
+        assertTrue(result.hasError(ValidationError.UNKNOWN_TOOL_CODE));
+        assertTrue(result.hasError(ValidationError.BAD_RENTAL_DAYS));
+        assertTrue(result.hasError(ValidationError.BAD_PERCENT_DISCOUNT));
+        assertTrue(result.hasError(ValidationError.INVALID_LEAP_DAY));
+        assertFalse(result.hasError(ValidationError.INVALID_MONTH));
+        assertEquals(Constants.BAD_TOOL_CODE + "TEST; " + Constants.BAD_RENTAL_DAYS + "; " +
+                     Constants.BAD_PERCENT_DISCOUNT + "; " + Constants.INVALID_LEAP_DAY,
+                     result.getErrorMessage());
+    }
+
+    @Test
+    public void testValidationReusesResult() {
+        ValidationResult result = new ValidationResult();
+        assertTrue(rentalAgreementFactory.validate(
+                Constants.JAKR, "7/2/20", "+4", "50%", result) == result);
+        assertTrue(result.isValid());
+        assertEquals(4, result.getRentalDays());
+        assertEquals(50, result.getPercentDiscount());
+        assertEquals(DateConverter.toEpochDay(2020, 7, 2), result.getCheckoutDay());
+        rentalAgreementFactory.validate(Constants.JAKR, "7/2/20", "99999999999", "50%", result);
+        assertTrue(result.hasError(ValidationError.BAD_RENTAL_DAYS));
+    }
+
+    @Test
+    public void testBatchQuotes() {
+        List<QuoteResult> results = rentalAgreementFactory.createRentalAgreements(Arrays.asList(
+                new QuoteRequest(Constants.LADW, "7/2/20", "3", "10%"),
+                new QuoteRequest(Constants.JAKR, "9/3/15", "5", "101%"),
+                new QuoteRequest(Constants.CHNS, "7/2/15", "5", "25%")));
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(BigDecimal.valueOf(3.58), results.get(0).getAgreement().getFinalCharge());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals(Constants.BAD_PERCENT_DISCOUNT, results.get(1).getError());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(BigDecimal.valueOf(3.35), results.get(2).getAgreement().getFinalCharge());
+    }
+
+    @Test
+    public void testStreamQuotes() throws IOException {
+        StringWriter out = new StringWriter();
+        long processed = new QuoteStreamProcessor(rentalAgreementFactory).process(
+                new BufferedReader(new StringReader(
+                        "LADW,7/2/20,3,10%\n\n" +
+                        "{\"toolCode\":\"JAKR\",\"checkoutDate\":\"9/3/15\"," +
+                        "\"rentalDays\":5,\"percentDiscount\":\"101%\"}\n")),
+                out);
+        assertEquals(2, processed);
+        assertEquals("OK,LADW,Ladder,Werner,3,7/2/20,7/5/20,1.99,2,3.98,10,0.40,3.58\n" +
+                     "{\"status\":\"error\",\"line\":3,\"error\":\"" +
+                     Constants.BAD_PERCENT_DISCOUNT + "\"}\n",
+                     out.toString());
+    }
+
     @Test
     public void testToolInventory() {
         ToolInventory inventory = new ToolInventory();
@@ -281,5 +475,592 @@ public class Tests {
         expectedException.expectMessage(Constants.REPEAT_TOOL_CODE);
         inventory.addTool(Constants.LADW, new Tool(ToolType.LADDER, Constants.WERNER));
     }
-}
 
+    @Test
+    public void testConcurrentCheckout() throws InterruptedException {
+        ToolInventory inventory = new ToolInventory();
+        inventory.addTool(Constants.LADW, new Tool(ToolType.LADDER, Constants.WERNER), 1000);
+        AtomicInteger checkedOut = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 500; j++) {
+                    if (inventory.checkout(Constants.LADW)) {
+                        checkedOut.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000, checkedOut.get());
+        assertEquals(0, inventory.getAvailableUnits(Constants.LADW));
+        assertFalse(inventory.checkout(Constants.LADW));
+        assertTrue(inventory.returnTool(Constants.LADW));
+        assertEquals(1, inventory.getAvailableUnits(Constants.LADW));
+        assertEquals(1000, inventory.getTotalUnits(Constants.LADW));
+        assertFalse(inventory.checkout("TEST"));
+    }
+
+    @Test
+    public void testChargeDayCache() {
+        ChargeDayCache cache = ChargeDayCalculator.enableCache(4);
+        try {
+            RentalAgreement first = rentalAgreementFactory.createRentalAgreement(
+                    Constants.JAKR, "7/2/15", "9", "0%");
+            RentalAgreement second = rentalAgreementFactory.createRentalAgreement(
+                    Constants.LADW, "7/2/15", "9", "0%");
+            assertEquals(Integer.valueOf(5), first.getChargeDays());
+            assertEquals(Integer.valueOf(8), second.getChargeDays());
+            assertEquals(1, cache.getMisses());
+            assertEquals(1, cache.getHits());
+            int checkoutDay = DateConverter.toEpochDay(2015, 7, 2);
+            for (int rentalDays = 2; rentalDays < 100; rentalDays++) {
+                ChargeDayCalculator.calculateChargeDays(checkoutDay, rentalDays);
+            }
+            assertTrue(cache.getEvictions() > 0);
+            assertEquals(4, cache.getCapacity());
+            // Rounded up, never down, and large sizes are capped rather than overflowing
+            assertEquals(4, new ChargeDayCache(3, new ChargeCalendar()).getCapacity());
+            assertEquals(8, new ChargeDayCache(5, new ChargeCalendar()).getCapacity());
+            assertEquals(2, new ChargeDayCache(1, new ChargeCalendar()).getCapacity());
+        }
+        finally {
+            ChargeDayCalculator.disableCache();
+        }
+    }
+
+    @Test
+    public void testHolidayRules() throws IOException {
+        HolidayCalendar holidays = HolidayCalendar.parse(new BufferedReader(new StringReader(
+                "# Observed holidays\n" +
+                "Memorial Day: nth 5 MONDAY last\n" +
+                "Christmas Day: fixed 12 25 observed\n")));
+        assertEquals(2, holidays.getRules().size());
+        int[] days = holidays.compile(2016);
+        assertEquals(DateConverter.toEpochDay(2016, 5, 30), days[0]);
+        assertEquals(DateConverter.toEpochDay(2016, 12, 26), days[1]);
+
+        ChargeCalendar calendar = new ChargeCalendar(holidays);
+        int checkoutDay = DateConverter.toEpochDay(2015, 5, 22);
+        assertEquals(2, calendar.countChargeDays(checkoutDay, 5, ToolType.JACKHAMMER));
+        assertEquals(3, calendar.countChargeDays(checkoutDay, 5, ToolType.CHAINSAW));
+        assertEquals(4, calendar.countChargeDays(checkoutDay, 5, ToolType.LADDER));
+
+        expectedException.expect(IllegalArgumentException.class);
+        HolidayCalendar.parse(new BufferedReader(new StringReader("Bad Day: nth 9 MONDAY 5")));
+    }
+
+    @Test
+    public void testLongRentalAcrossCenturies() {
+        // 2100 is not a leap year, so 2/28/2100 is followed by 3/1/2100
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.LADW, "2/27/2100", "2", "0%");
+        assertEquals("3/1/2100", agreement.getReturnDate());
+
+        // Count a 30 year rental one day at a time with java.time
+        LocalDate checkout = LocalDate.of(2085, 3, 15);
+        int rentalDays = 10956; // 30 years with 6 leap days, since 2100 is not one
+        int weekdays = 0;
+        for (LocalDate day = checkout.plusDays(1); !day.isAfter(checkout.plusDays(rentalDays));
+             day = day.plusDays(1)) {
+            LocalDate independenceDay = LocalDate.of(day.getYear(), 7, 4);
+            if (independenceDay.getDayOfWeek() == DayOfWeek.SATURDAY) {
+                independenceDay = independenceDay.minusDays(1);
+            }
+            else if (independenceDay.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                independenceDay = independenceDay.plusDays(1);
+            }
+            LocalDate laborDay = LocalDate.of(day.getYear(), 9, 1)
+                    .with(TemporalAdjusters.firstInMonth(DayOfWeek.MONDAY));
+            if (!day.equals(independenceDay) && !day.equals(laborDay) &&
+                day.getDayOfWeek() != DayOfWeek.SATURDAY && day.getDayOfWeek() != DayOfWeek.SUNDAY) {
+                weekdays++;
+            }
+        }
+        agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.JAKR, "3/15/2085", String.valueOf(rentalDays), "0%");
+        assertEquals(Integer.valueOf(weekdays), agreement.getChargeDays());
+        assertEquals("3/15/2115", agreement.getReturnDate());
+
+        // Rentals past the supported checkout years count the same as a cycle earlier
+        int checkoutDay = DateConverter.toEpochDay(2015, 7, 2);
+        int cycleDays = DateConverter.toEpochDay(2400, 1, 1) - DateConverter.toEpochDay(2000, 1, 1);
+        assertEquals(ChargeDayCalculator.calculateDaysToCharge(checkoutDay, 400, ToolType.LADDER) +
+                     ChargeDayCalculator.calculateDaysToCharge(checkoutDay + 400, cycleDays - 400,
+                                                               ToolType.LADDER),
+                     ChargeDayCalculator.calculateDaysToCharge(checkoutDay, cycleDays, ToolType.LADDER));
+        assertEquals(ChargeDayCalculator.calculateDaysToCharge(checkoutDay, 30, ToolType.CHAINSAW),
+                     ChargeDayCalculator.calculateDaysToCharge(checkoutDay + cycleDays, 30,
+                                                               ToolType.CHAINSAW));
+    }
+
+    @Test
+    public void testRentalDaysTooLongForAgreement() {
+        // The factory caps rental days, and so must agreements built directly
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage(Constants.BAD_RENTAL_DAYS);
+        new RentalAgreement(Constants.LADW, new Tool(ToolType.LADDER, Constants.WERNER), "7/2/20",
+                            Integer.MAX_VALUE, 0);
+    }
+
+    @Test
+    public void testQuoteServer() throws IOException, InterruptedException {
+        ToolInventory inventory = new ToolInventory();
+        inventory.addTool(Constants.LADW, new Tool(ToolType.LADDER, Constants.WERNER));
+        QuoteServer server = new QuoteServer(inventory);
+        int port = server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpResponse<String> quote = post(client, port, "/quote",
+                    "{\"toolCode\":\"LADW\",\"checkoutDate\":\"7/2/20\"," +
+                    "\"rentalDays\":3,\"percentDiscount\":\"10%\"}");
+            assertEquals(200, quote.statusCode());
+            assertTrue(quote.body().contains("\"finalCharge\":3.58"));
+
+            assertEquals(400, post(client, port, "/quote", "LADW,7/2/20,1,10%").statusCode());
+            assertEquals(200, post(client, port, "/checkout", "LADW,7/2/20,3,10%").statusCode());
+            assertEquals(0, inventory.getAvailableUnits(Constants.LADW));
+            assertEquals(409, post(client, port, "/checkout", "LADW,7/2/20,3,10%").statusCode());
+            HttpResponse<String> returned = post(client, port, "/return", Constants.LADW);
+            assertEquals(200, returned.statusCode());
+            assertTrue(returned.body().contains("\"availableUnits\":1"));
+            assertEquals(404, post(client, port, "/return", "TEST").statusCode());
+        }
+        finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testQuoteServerUnjournaledTool() throws IOException, InterruptedException {
+        // Tool codes longer than an agreement record holds are still valid in the inventory
+        ToolInventory inventory = new ToolInventory();
+        inventory.addTool("LADDER-XL", new Tool(ToolType.LADDER, Constants.WERNER));
+        Path file = Files.createTempFile("agreements", ".journal");
+        try (AgreementJournal journal = new AgreementJournal(file)) {
+            QuoteServer server = new QuoteServer(inventory, journal);
+            int port = server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try {
+                HttpClient client = HttpClient.newHttpClient();
+                assertEquals(200, post(client, port, "/quote", "LADDER-XL,7/2/20,3,10%").statusCode());
+                HttpResponse<String> checkout = post(client, port, "/checkout", "LADDER-XL,7/2/20,3,10%");
+                assertEquals(422, checkout.statusCode());
+                assertTrue(checkout.body().contains(Constants.JOURNAL_FAILURE));
+                assertEquals(1, inventory.getAvailableUnits("LADDER-XL"));
+                assertEquals(0, journal.size());
+            }
+            finally {
+                server.stop();
+            }
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    private static HttpResponse<String> post(HttpClient client, int port, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                                         .POST(HttpRequest.BodyPublishers.ofString(body))
+                                         .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void testAgreementJournal() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("agreements", ".journal");
+        try {
+            RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                    Constants.LADW, "7/2/20", "3", "10%");
+            try (AgreementJournal journal = new AgreementJournal(file)) {
+                Thread[] writers = new Thread[4];
+                for (int i = 0; i < writers.length; i++) {
+                    writers[i] = new Thread(() -> {
+                        try {
+                            for (int j = 0; j < 25; j++) {
+                                journal.append(agreement);
+                            }
+                        }
+                        catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    writers[i].start();
+                }
+                for (Thread writer : writers) {
+                    writer.join();
+                }
+            }
+
+            // Simulate a crash part way through writing a record
+            long intact = Files.size(file);
+            Files.write(file, new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+            try (AgreementJournal journal = new AgreementJournal(file)) {
+                assertEquals(intact, Files.size(file));
+                AgreementRecord record = new AgreementRecord();
+                int records = 0;
+                for (Iterator<byte[]> replay = journal.replay(); replay.hasNext(); records++) {
+                    record.wrap(ByteBuffer.wrap(replay.next()), 0);
+                    assertTrue(record.isToolCode(Constants.LADW));
+                    assertEquals(358, record.getFinalChargeCents());
+                }
+                assertEquals(100, records);
+            }
+
+            // Or after the file was extended but before its data was written
+            Files.write(file, new byte[4096], StandardOpenOption.APPEND);
+            try (AgreementJournal journal = new AgreementJournal(file)) {
+                assertEquals(intact, Files.size(file));
+                journal.append(agreement);
+                assertEquals(intact + 8 + AgreementRecord.SIZE, Files.size(file));
+            }
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testAgreementRecord() {
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.CHNS, "2015-07-02", "5", "25%");
+        ByteBuffer buffer = ByteBuffer.allocate(3 * AgreementRecord.SIZE);
+        AgreementRecord record = new AgreementRecord();
+        record.wrap(buffer, 2 * AgreementRecord.SIZE).set(agreement);
+        record.wrap(buffer, 0);
+        assertFalse(record.isToolCode(Constants.CHNS));
+
+        record.wrap(buffer, 2 * AgreementRecord.SIZE);
+        assertTrue(record.isToolCode(Constants.CHNS));
+        assertEquals(Constants.CHNS, record.getToolCode());
+        assertEquals(ToolType.CHAINSAW, record.getToolType());
+        assertEquals(Constants.SITHL, record.getToolBrand());
+        assertEquals("2015-07-02", record.getCheckoutDate());
+        assertEquals(agreement.getReturnDate(), record.getReturnDate());
+        assertEquals(5, record.getRentalDays());
+        assertEquals(agreement.getChargeDays().intValue(), record.getChargeDays());
+        assertEquals(25, record.getPercentDiscount());
+        assertEquals(agreement.getDailyCharge(), record.getDailyCharge());
+        assertEquals(agreement.getPreDiscountCharge(), record.getPreDiscountCharge());
+        assertEquals(agreement.getDiscountAmount(), record.getDiscountAmount());
+        assertEquals(agreement.getFinalCharge(), record.getFinalCharge());
+    }
+
+    @Test
+    public void testAgreementColumnStore() {
+        AgreementColumnStore store = new AgreementColumnStore(10000);
+        RentalAgreement ladder = rentalAgreementFactory.createRentalAgreement(
+                Constants.LADW, "7/2/20", "3", "10%");
+        RentalAgreement jackhammer = rentalAgreementFactory.createRentalAgreement(
+                Constants.JAKR, "7/2/15", "9", "0%");
+        RentalAgreement dewalt = rentalAgreementFactory.createRentalAgreement(
+                Constants.JAKD, "9/3/15", "6", "0%");
+        for (int i = 0; i < 3000; i++) {
+            store.add(jackhammer);
+            store.add(dewalt);
+            store.add(ladder);
+        }
+        assertEquals(9000, store.size());
+
+        AgreementColumnStore.Report all = store.report(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertEquals(3, all.getTotals().size());
+        AgreementColumnStore.Totals jackhammers = all.getTotals(ToolType.JACKHAMMER);
+        assertEquals(6000, jackhammers.getAgreements());
+        assertEquals(3000 * (5 + 3), jackhammers.getChargeDays());
+        assertEquals(3000 * (1495 + 897), jackhammers.getFinalChargeCents());
+        assertEquals(3000 * 40, all.getTotals(Constants.WERNER).getDiscountAmountCents());
+
+        AgreementColumnStore.Report july2015 = store.report(
+                DateConverter.toEpochDay(2015, 7, 1), DateConverter.toEpochDay(2015, 7, 31));
+        assertEquals(1, july2015.getTotals().size());
+        assertEquals(Constants.RIDGID, july2015.getTotals().get(0).getBrand());
+        assertEquals(3000, july2015.getTotals(Constants.RIDGID).getAgreements());
+        assertEquals(0, july2015.getTotals(Constants.WERNER).getAgreements());
+
+        // More (tool type, brand) pairs than fit a byte
+        for (int brand = 0; brand < 300; brand++) {
+            store.add(new RentalAgreement("B" + brand, new Tool(ToolType.CHAINSAW, "Brand " + brand),
+                                          "7/2/20", 3, 10));
+        }
+        AgreementColumnStore.Report brands = store.report(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertEquals(303, brands.getTotals().size());
+        assertEquals(1, brands.getTotals("Brand 299").getAgreements());
+        assertEquals(3000, brands.getTotals(Constants.WERNER).getAgreements());
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        Metrics.LatencyHistogram histogram = new Metrics.LatencyHistogram();
+        for (long nanos = 1; nanos <= 100000; nanos++) {
+            histogram.record(nanos);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        long median = histogram.getPercentile(0.5);
+        assertTrue(median >= 50000 && median <= 50000 * 1.07);
+        long p99 = histogram.getPercentile(0.99);
+        assertTrue(p99 >= 99000 && p99 <= 100000);
+        histogram.reset();
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+
+    @Test
+    public void testStageMetrics() throws Exception {
+        Metrics.registerMBeans();
+        Metrics.Stage.CHARGE_DAYS.getHistogram().reset();
+        boolean enabled = Metrics.isEnabled();
+        try {
+            Metrics.setEnabled(false);
+            rentalAgreementFactory.createRentalAgreement(Constants.LADW, "7/2/20", "3", "10%");
+            assertEquals(0, Metrics.Stage.CHARGE_DAYS.getHistogram().getCount());
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.setAttribute(new ObjectName("com.rental:type=QuoteMetrics,name=Control"),
+                                new Attribute("Enabled", true));
+            assertTrue(Metrics.isEnabled());
+            rentalAgreementFactory.createRentalAgreement(Constants.LADW, "7/2/20", "3", "10%");
+            assertEquals(1L, server.getAttribute(
+                    new ObjectName("com.rental:type=QuoteMetrics,stage=CHARGE_DAYS"), "Count"));
+        }
+        finally {
+            Metrics.setEnabled(enabled);
+        }
+    }
+
+    @Test
+    public void testInventorySnapshot() throws IOException {
+        Path file = Files.createTempFile("inventory", ".snapshot");
+        try {
+            int written = InventorySnapshot.write(new BufferedReader(new StringReader(
+                    "toolCode,toolType,brand,units\n" +
+                    "JAKR,Jackhammer,Ridgid,2\n" +
+                    "LADW,LADDER,Werner,1\n" +
+                    "CHNS,Chainsaw,Stihl,3\n")), file);
+            assertEquals(3, written);
+            InventorySnapshot snapshot = InventorySnapshot.open(file);
+            assertEquals(0, snapshot.find(Constants.CHNS));
+            assertEquals(Constants.LADW, snapshot.getToolCode(snapshot.find(Constants.LADW)));
+            assertEquals(-1, snapshot.find("LAD"));
+            assertEquals(-1, snapshot.find("TOOLONGCODE"));
+
+            ToolInventory inventory = new ToolInventory(snapshot);
+            assertEquals(Constants.RIDGID, inventory.getTool(Constants.JAKR).getBrand());
+            assertEquals(ToolType.JACKHAMMER, inventory.getTool(Constants.JAKR).getType());
+            assertEquals(2, inventory.getAvailableUnits(Constants.JAKR));
+            assertTrue(inventory.checkout(Constants.JAKR));
+            assertEquals(1, inventory.getAvailableUnits(Constants.JAKR));
+            assertEquals(2, inventory.getTotalUnits(Constants.JAKR));
+
+            assertEquals(Constants.WERNER, inventory.removeTool(Constants.LADW).getBrand());
+            assertEquals(null, inventory.getTool(Constants.LADW));
+            inventory.addTool(Constants.LADW, new Tool(ToolType.LADDER, Constants.WERNER), 5);
+            assertEquals(5, inventory.getTotalUnits(Constants.LADW));
+
+            RentalAgreement agreement = new RentalAgreementFactory(inventory).createRentalAgreement(
+                    Constants.JAKR, "7/2/20", "4", "50%");
+            assertEquals(BigDecimal.valueOf(1.49), agreement.getFinalCharge());
+
+            expectedException.expect(RuntimeException.class);
+            expectedException.expectMessage(Constants.REPEAT_TOOL_CODE);
+            inventory.addTool(Constants.CHNS, new Tool(ToolType.CHAINSAW, Constants.SITHL));
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testToolCodeIndex() {
+        ToolCodeIndex<String> index = new ToolCodeIndex<>();
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(null, index.putIfAbsent("T" + i, "tool " + i));
+        }
+        assertEquals("tool 1", index.putIfAbsent("T1", "other"));
+        assertEquals("tool 9999", index.get(new StringBuilder("T9").append(999)));
+        assertEquals("tool 42", index.get(ByteBuffer.wrap("xxT42".getBytes(StandardCharsets.US_ASCII)), 2, 3));
+        assertEquals(null, index.get("T10000"));
+        assertEquals(null, index.get(""));
+
+        // Codes too long or not ASCII to pack go to the overflow map
+        assertEquals(null, index.putIfAbsent("LONGTOOLCODE", "long"));
+        assertEquals("long", index.get(new StringBuilder("LONGTOOLCODE")));
+        assertEquals("long", index.get(ByteBuffer.wrap("LONGTOOLCODE".getBytes(StandardCharsets.US_ASCII)), 0, 12));
+
+        assertFalse(index.remove("T5", "other"));
+        assertTrue(index.remove("T5", "tool 5"));
+        assertEquals(null, index.get("T5"));
+        assertTrue(index.replace("T6", "tool 6", "six"));
+        assertEquals("six", index.get("T6"));
+        assertEquals(10000, index.size());
+        assertTrue(Long.compareUnsigned(ToolCodeIndex.pack("LAD"), ToolCodeIndex.pack("LADW")) < 0);
+        assertEquals(0, ToolCodeIndex.pack("TOOLCODE9"));
+
+        // Codes that come and go are dropped when the table is rehashed
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(null, index.putIfAbsent("C" + i, "churn"));
+            assertTrue(index.remove("C" + i, "churn"));
+        }
+        assertEquals(10000, index.size());
+        assertEquals("tool 9999", index.get("T9999"));
+    }
+
+    @Test
+    public void testReceiptRenderer() throws IOException {
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.JAKR, "2020-07-02", "9", "0%");
+        String receipt = agreement.toString();
+        assertTrue(receipt.contains("Due date: 2020-07-11\n"));
+        assertTrue(receipt.contains("Daily rental charge: $2.99\n"));
+        assertTrue(receipt.contains("Discount amount: $0.00\n"));
+        assertTrue(receipt.contains("Final charge: $14.95\n"));
+
+        ByteBuffer bytes = ReceiptRenderer.DEFAULT.render(agreement, ByteBuffer.allocate(1024));
+        assertEquals(receipt, new String(bytes.array(), 0, bytes.position(), StandardCharsets.US_ASCII));
+        assertEquals(receipt, ReceiptRenderer.DEFAULT.render(agreement, CharBuffer.allocate(1024)).flip().toString());
+        StringWriter writer = new StringWriter();
+        ReceiptRenderer.DEFAULT.render(agreement, writer);
+        assertEquals(receipt, writer.toString());
+
+        ReceiptRenderer renderer = new ReceiptRenderer("{toolCode} {{x}} {dueDate} ${finalCharge}");
+        assertEquals("JAKR {x} 2020-07-11 $14.95",
+                     renderer.render(agreement, new StringBuilder()).toString());
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("{returnDate}");
+        new ReceiptRenderer("Due: {returnDate}");
+    }
+
+    @Test
+    public void testReservationBook() {
+        ToolInventory inventory = ToolInventory.defaultInventory();
+        inventory.addTool("LADX", new Tool(ToolType.LADDER, Constants.WERNER), 2);
+        ReservationBook book = new ReservationBook(inventory);
+        int day = DateConverter.toEpochDay(2020, 7, 2);
+
+        Reservation first = book.reserve("LADX", day, day + 3);
+        assertEquals(0, first.getUnit());
+        assertEquals(1, book.reserve("LADX", day + 2, day + 5).getUnit());
+        assertEquals(null, book.reserve("LADX", day + 1, day + 4));
+        assertEquals(0, book.countFreeUnits("LADX", day + 2, day + 3));
+        // Ranges are half-open, so unit 0 is free again on its due day
+        assertEquals(0, book.firstFreeUnit("LADX", day + 3, day + 10));
+        assertFalse(book.isFree("LADX", 1, day + 4, day + 10));
+        assertTrue(book.isFree("LADX", 1, day + 5, day + 10));
+        assertEquals(null, book.reserve("LADX", 0, day - 1, day + 1));
+
+        assertTrue(book.cancel(first));
+        assertFalse(book.cancel(first));
+        assertEquals(2, book.countFreeUnits("LADX", day, day + 2));
+
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.LADW, "7/2/20", "3", "10%");
+        Reservation booked = book.reserve(agreement);
+        assertEquals(day + 3, booked.getDueDay());
+        assertEquals(1, book.getReservations(Constants.LADW, 0).size());
+        assertEquals(null, book.reserve(agreement));
+
+        // Only the first days of a long booking are marked in the day bitmaps
+        Reservation year = book.reserve("LADX", 0, day + 10, day + 410);
+        assertEquals(1, book.countFreeUnits("LADX", day + 400, day + 405));
+        assertEquals(1, book.firstFreeUnit("LADX", day + 400, day + 405));
+        assertTrue(book.cancel(year));
+        assertEquals(2, book.countFreeUnits("LADX", day + 400, day + 405));
+
+        expectedException.expect(RuntimeException.class);
+        expectedException.expectMessage(Constants.BAD_TOOL_CODE + "TEST");
+        book.firstFreeUnit("TEST", day, day + 1);
+    }
+
+    @Test
+    public void testRepricingSimulator() {
+        RepricingSimulator simulator = new RepricingSimulator();
+        long finalChargeCents = 0;
+        long jackhammerChargeDays = 0;
+        for (int i = 0; i < 200; i++) {
+            RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                    i % 2 == 0 ? Constants.LADW : Constants.JAKR,
+                    DateConverter.formatDate(DateConverter.toEpochDay(2015, 6, 1) + i * 3),
+                    String.valueOf(2 + i % 9), i % 2 == 0 ? "10%" : "0%");
+            simulator.add(agreement);
+            finalChargeCents += agreement.getFinalChargeCents();
+            if (agreement.getToolType() == ToolType.JACKHAMMER) {
+                jackhammerChargeDays += agreement.getChargeDays();
+            }
+        }
+        assertEquals(200, simulator.size());
+
+        // Repricing at the current rates changes nothing
+        RepricingSimulator.Report unchanged = simulator.simulate(RateTable.current());
+        assertEquals(finalChargeCents, unchanged.getTotal().getBaselineFinalChargeCents());
+        assertEquals(0, unchanged.getTotal().getFinalChargeDeltaCents());
+
+        RateTable candidate = RateTable.current()
+                .withDailyChargeCents(ToolType.JACKHAMMER, 399)
+                .withChargeDays(ToolType.LADDER, true, true, true);
+        RepricingSimulator.Report report = simulator.simulate(candidate);
+        RepricingSimulator.Totals jackhammer = report.getTotals(ToolType.JACKHAMMER);
+        assertEquals(100, jackhammer.getAgreements());
+        assertEquals(100 * jackhammerChargeDays, jackhammer.getFinalChargeDeltaCents());
+        RepricingSimulator.Totals ladder = report.getTotals(ToolType.LADDER);
+        assertTrue(ladder.getChargeDays() > ladder.getBaselineChargeDays());
+        assertTrue(ladder.getFinalChargeDeltaCents() > 0);
+        assertEquals(0, report.getTotals(ToolType.CHAINSAW).getAgreements());
+        assertEquals(jackhammer.getFinalChargeDeltaCents() + ladder.getFinalChargeDeltaCents(),
+                     report.getTotal().getFinalChargeDeltaCents());
+    }
+
+    @Test
+    public void testPriceMatrix() {
+        PriceMatrix matrix = rentalAgreementFactory.createPriceMatrix(
+                Constants.CHNS, "6/28/15", "60", "25%");
+        assertEquals(60, matrix.getMaxDays());
+        for (int days = 2; days <= 60; days++) {
+            RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                    Constants.CHNS, "6/28/15", String.valueOf(days), "25%");
+            assertEquals(agreement.getChargeDays().intValue(), matrix.getChargeDays(days));
+            assertEquals(agreement.getDiscountAmountCents(), matrix.getDiscountAmountCents(days));
+            assertEquals(agreement.getFinalCharge(), matrix.getFinalCharge(days));
+            assertEquals(agreement.getReturnDate(), matrix.getReturnDate(days));
+        }
+        // 6/29/15 is a Monday
+        assertEquals(1, matrix.getChargeDays(1));
+        assertEquals(matrix.getFinalChargeCents(60), matrix.getFinalChargeCents()[59]);
+
+        expectedException.expect(RuntimeException.class);
+        expectedException.expectMessage(Constants.BAD_RENTAL_DAYS);
+        rentalAgreementFactory.createPriceMatrix(Constants.CHNS, "6/28/15", "0", "25%");
+    }
+
+    @Test
+    public void testDateAdapters() {
+        // LocalDate and Calendar convert to and from the same epoch days
+        for (LocalDate date = LocalDate.of(1999, 12, 1); date.getYear() < 2101; date = date.plusDays(1)) {
+            int epochDay = DateConverter.toEpochDay(date);
+            assertEquals(date.toEpochDay(), epochDay);
+            assertEquals(date, DateConverter.toLocalDate(epochDay));
+            assertEquals(epochDay, DateConverter.toEpochDay(DateConverter.toCalendar(epochDay)));
+        }
+        assertEquals(DateConverter.toEpochDay(2016, 2, 29),
+                     DateConverter.toEpochDay(DateConverter.createCalenderFromString("2/29/16")));
+        assertEquals("7/5/20", DateConverter.getReturnDate(LocalDate.of(2020, 7, 2), 3));
+        assertEquals("7/5/20", DateConverter.getReturnDate(DateConverter.toCalendar(
+                DateConverter.toEpochDay(2020, 7, 2)), 3));
+
+        // Friday 7/3/15 is Independence Day observed
+        LocalDate checkout = LocalDate.of(2015, 7, 2);
+        ChargeDayCalculator.Days days = ChargeDayCalculator.calculateChargeDays(checkout, 5);
+        assertEquals(2, days.getWeekdays());
+        assertEquals(2, days.getWeekends());
+        assertEquals(1, days.getHolidays());
+        assertEquals(days.getWeekdays(), ChargeDayCalculator.calculateChargeDays(
+                DateConverter.toCalendar(DateConverter.toEpochDay(checkout)), 5).getWeekdays());
+
+        RentalAgreement agreement = rentalAgreementFactory.createRentalAgreement(
+                Constants.LADW, "2015-07-02", "5", "0%");
+        assertEquals(checkout, agreement.getCheckoutLocalDate());
+        assertEquals(LocalDate.of(2015, 7, 7), agreement.getReturnLocalDate());
+    }
+}
@@ -3,21 +3,43 @@ package com.rental;
 import com.rental.objects.Tool;
 import com.rental.objects.ToolType;
 import com.rental.util.Constants;
+import com.rental.util.ToolCodeIndex;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 /**
- * Simple container to associate different tool codes to the tools they represent
+ * Container to associate different tool codes to the tools they represent,
+ * along with how many units of each tool the store owns and how many are
+ * currently available to check out. Safe for use by any number of threads:
+ * checkouts and returns are lock-free, and threads working with different tools
+ * never touch the same cache line. Stock is indexed by packed tool code (see
+ * ToolCodeIndex), so looking a tool up builds and hashes no objects.
+ *
+ * An inventory can be backed by an InventorySnapshot. Lookups then read the
+ * snapshot directly, and a tool's stock is only loaded from it the first time
+ * a unit is checked out or returned, so startup costs nothing no matter how
+ * large the catalog is.
  */
 public class ToolInventory {
-    private final Map<String, Tool> toolMap = new HashMap<>();
+    // Stands in for a snapshot tool that has been removed
+    private static final Stock REMOVED = new Stock(null, 0);
+
+    private final ToolCodeIndex<Stock> stockMap = new ToolCodeIndex<>();
+    private final InventorySnapshot snapshot; // null if every tool is added directly
 
     /**
      * Default constructor
      */
     public ToolInventory() {
-        // nothing to do
+        this(null);
+    }
+
+    /**
+     * @param snapshot catalog to load tools from on first use
+     */
+    public ToolInventory(InventorySnapshot snapshot) {
+        this.snapshot = snapshot;
     }
 
     /**
@@ -41,21 +63,64 @@ public class ToolInventory {
      * @return associated tool, or null if it does not exist
      */
     public Tool getTool(String toolCode) {
-        return toolMap.get(toolCode);
+        Stock stock = stockMap.get(toolCode);
+        if (stock == null && snapshot != null) {
+            // Read straight from the snapshot, only loading stock to change it
+            int entry = snapshot.find(toolCode);
+            return entry < 0 ? null : snapshot.getTool(entry);
+        }
+        return stock == null ? null : stock.tool;
     }
 
     /**
-     * Adds a new tool code and associated tool to the inventory
+     * Finds the stock of a tool, loading it from the snapshot the first time
+     * it is changed
+     */
+    private Stock stock(String toolCode) {
+        Stock stock = stockMap.get(toolCode);
+        if (stock == null && snapshot != null) {
+            int entry = snapshot.find(toolCode);
+            if (entry >= 0) {
+                Stock loaded = new Stock(snapshot.getTool(entry), snapshot.getUnits(entry));
+                stock = stockMap.putIfAbsent(toolCode, loaded);
+                if (stock == null) {
+                    stock = loaded;
+                }
+            }
+        }
+        return stock;
+    }
+
+    /**
+     * Adds a new tool code and associated tool to the inventory, with a
+     * single unit in stock
      *
      * @param toolCode tool code to add
      * @param tool tool object to add
      */
     public void addTool(String toolCode, Tool tool) {
-        if (getTool(toolCode) != null) {
+        addTool(toolCode, tool, 1);
+    }
+
+    /**
+     * Adds a new tool code and associated tool to the inventory
+     *
+     * @param toolCode tool code to add
+     * @param tool tool object to add
+     * @param units number of units of the tool the store owns
+     */
+    public void addTool(String toolCode, Tool tool, int units) {
+        if (units < 0) {
+            throw new IllegalArgumentException("Unit count cannot be negative: " + units);
+        }
+        Stock added = new Stock(tool, units);
+        Stock existing = stock(toolCode);
+        boolean stored = existing == null ? stockMap.putIfAbsent(toolCode, added) == null :
+                         existing == REMOVED && stockMap.replace(toolCode, REMOVED, added);
+        if (!stored) {
             System.out.println(Constants.REPEAT_TOOL_CODE);
             throw new RuntimeException(Constants.REPEAT_TOOL_CODE);
         }
-        toolMap.put(toolCode, tool);
     }
 
     /**
@@ -65,6 +130,129 @@ public class ToolInventory {
      * @return the removed tool, or null if there wasn't one with the associated code
      */
     public Tool removeTool(String toolCode) {
-        return toolMap.remove(toolCode);
+        Stock stock = stock(toolCode);
+        if (stock == null || stock == REMOVED) {
+            return null;
+        }
+        // A snapshot tool has to stay shadowed, or it would be loaded again
+        boolean removed = snapshot != null && snapshot.find(toolCode) >= 0 ?
+                stockMap.replace(toolCode, stock, REMOVED) : stockMap.remove(toolCode, stock);
+        return removed ? stock.tool : null;
+    }
+
+    /**
+     * Atomically takes one unit of a tool out of stock
+     *
+     * @param toolCode code of the tool to check out
+     * @return true if a unit was checked out, false if the tool is unknown or
+     *         every unit is already checked out
+     */
+    public boolean checkout(String toolCode) {
+        Stock stock = stock(toolCode);
+        return stock != null && stock.checkout();
+    }
+
+    /**
+     * Atomically puts one unit of a tool back in stock
+     *
+     * @param toolCode code of the tool being returned
+     * @return true if the unit was returned, false if the tool is unknown or
+     *         no units are checked out
+     */
+    public boolean returnTool(String toolCode) {
+        Stock stock = stock(toolCode);
+        return stock != null && stock.giveBack();
+    }
+
+    /**
+     * @param toolCode code of the tool in question
+     * @return number of units available to check out, or 0 if the tool is unknown
+     */
+    public int getAvailableUnits(String toolCode) {
+        Stock stock = stockMap.get(toolCode);
+        if (stock == null && snapshot != null) {
+            int entry = snapshot.find(toolCode);
+            return entry < 0 ? 0 : snapshot.getUnits(entry);
+        }
+        return stock == null ? 0 : stock.available;
+    }
+
+    /**
+     * @param toolCode code of the tool in question
+     * @return number of units the store owns, or 0 if the tool is unknown
+     */
+    public int getTotalUnits(String toolCode) {
+        Stock stock = stockMap.get(toolCode);
+        if (stock == null && snapshot != null) {
+            int entry = snapshot.find(toolCode);
+            return entry < 0 ? 0 : snapshot.getUnits(entry);
+        }
+        return stock == null ? 0 : stock.totalUnits;
+    }
+
+    /**
+     * Padding placed before the available count, so it never shares a cache
+     * line with whatever the JVM allocated just before it (superclass fields are
+     * always laid out first)
+     */
+    private abstract static class StockPadding {
+        long p01, p02, p03, p04, p05, p06, p07, p08;
+    }
+
+    /**
+     * Holds the available count on its own cache line
+     */
+    private abstract static class StockCounter extends StockPadding {
+        volatile int available;
+    }
+
+    /**
+     * Stock of a single tool code. The trailing padding keeps the available
+     * count away from whatever the JVM allocates just after it.
+     */
+    private static final class Stock extends StockCounter {
+        private static final VarHandle AVAILABLE;
+
+        static {
+            try {
+                AVAILABLE = MethodHandles.lookup()
+                        .findVarHandle(StockCounter.class, "available", int.class);
+            }
+            catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        long p11, p12, p13, p14, p15, p16, p17, p18;
+        final Tool tool;
+        final int totalUnits;
+
+        Stock(Tool tool, int totalUnits) {
+            this.tool = tool;
+            this.totalUnits = totalUnits;
+            this.available = totalUnits;
+        }
+
+        boolean checkout() {
+            int current;
+            do {
+                current = available;
+                if (current == 0) {
+                    return false;
+                }
+            } while (!AVAILABLE.compareAndSet(this, current, current - 1));
+            return true;
+        }
+
+        boolean giveBack() {
+            int current;
+            do {
+                current = available;
+                if (current == totalUnits) {
+                    return false;
+                }
+            } while (!AVAILABLE.compareAndSet(this, current, current + 1));
+            return true;
+        }
     }
 }
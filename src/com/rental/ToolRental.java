@@ -1,6 +1,28 @@
 package com.rental;
 
+import com.rental.util.Constants;
+import com.rental.util.Metrics;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
 public class ToolRental {
+    private static final String STREAM_FLAG = "--stream";
+    private static final String SERVE_FLAG = "--serve";
+    private static final String SNAPSHOT_FLAG = "--snapshot";
+    private static final int DEFAULT_PORT = 8080;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
 
     /**
      * Simple main just ensuring that the input arguments will not cause
@@ -10,9 +32,39 @@ public class ToolRental {
      *
      * Command line argument handling done in RentalAgreementFactory,
      * since this isn't really intended to be used
+     *
+     * Usage:
+     *   toolCode checkoutDate rentalDays percentDiscount
+     *       prints a single rental agreement
+     *   --stream [file]
+     *       prices one CSV or NDJSON request per line from the file (or stdin
+     *       if no file or "-" is given) and prints one result line per request
+     *   --serve [port]
+     *       serves quotes, checkouts and returns over HTTP (see QuoteServer)
+     *       on the given port, or 8080 if none is given. Checkouts are
+     *       journaled to the file named by the rental.journal.file property,
+     *       and per-stage latency metrics are available over JMX. Tools come
+     *       from the snapshot named by the rental.inventory.snapshot property,
+     *       or the tools defined in the spec
+     *   --snapshot catalog.csv snapshot
+     *       builds an inventory snapshot from a toolCode,toolType,brand,units
+     *       CSV catalog
      */
-    public static void main(String[] args) {
-        if (args.length != 4 ||
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 1 && args.length <= 2 && STREAM_FLAG.equals(args[0])) {
+            stream(args.length == 2 ? args[1] : "-");
+        }
+        else if (args.length >= 1 && args.length <= 2 && SERVE_FLAG.equals(args[0])) {
+            serve(args.length == 2 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+        }
+        else if (args.length == 3 && SNAPSHOT_FLAG.equals(args[0])) {
+            try (BufferedReader csv = Files.newBufferedReader(Paths.get(args[1]),
+                                                              StandardCharsets.UTF_8)) {
+                System.out.println("Wrote " + InventorySnapshot.write(csv, Paths.get(args[2])) +
+                                   " tools to " + args[2]);
+            }
+        }
+        else if (args.length != 4 ||
             args[0] == null ||
             args[1] == null ||
             args[2] == null ||
@@ -25,4 +77,49 @@ public class ToolRental {
             System.out.println(factory.createRentalAgreement(args[0], args[1], args[2], args[3]));
         }
     }
+
+    /**
+     * Runs the streaming bulk-quote mode, writing results straight to stdout
+     *
+     * @param source path of the input file, or "-" for stdin
+     */
+    private static void stream(String source) throws IOException {
+        InputStream input = "-".equals(source) ?
+                new FileInputStream(FileDescriptor.in) : new FileInputStream(source);
+        try (BufferedReader in = new BufferedReader(
+                     new InputStreamReader(input, StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+             Writer out = new BufferedWriter(new OutputStreamWriter(
+                     new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8),
+                     IO_BUFFER_SIZE)) {
+            new QuoteStreamProcessor(new RentalAgreementFactory()).process(in, out);
+        }
+    }
+
+    /**
+     * Runs the HTTP server until the process is stopped
+     *
+     * @param port port to listen on
+     */
+    private static void serve(int port) throws IOException {
+        String journalFile = System.getProperty(Constants.JOURNAL_FILE_PROPERTY);
+        AgreementJournal journal = journalFile == null ? null :
+                new AgreementJournal(Paths.get(journalFile));
+        String snapshotFile = System.getProperty(Constants.INVENTORY_SNAPSHOT_PROPERTY);
+        ToolInventory inventory = snapshotFile == null ? ToolInventory.defaultInventory() :
+                new ToolInventory(InventorySnapshot.open(Paths.get(snapshotFile)));
+        QuoteServer server = new QuoteServer(inventory, journal);
+        Metrics.registerMBeans();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            if (journal != null) {
+                try {
+                    journal.close();
+                }
+                catch (IOException e) {
+                    // every record was already forced, nothing is lost
+                }
+            }
+        }));
+        System.out.println("Listening on port " + server.start(port));
+    }
 }
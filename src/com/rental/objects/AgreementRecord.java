@@ -0,0 +1,241 @@
+package com.rental.objects;
+
+import com.rental.util.DateConverter;
+import com.rental.util.Money;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed-width binary form of a RentalAgreement, for exchanging and storing
+ * agreements without going through text. Every record is SIZE bytes laid out
+ * (little-endian) as:
+ * <pre>
+ *    0  tool code       8 bytes, ASCII, zero padded
+ *    8  tool brand     16 bytes, ASCII, zero padded
+ *   24  checkout day    int, days since 1/1/1970
+ *   28  rental days     int
+ *   32  charge days     int
+ *   36  tool type       byte, ToolType ordinal
+ *   37  date style      byte, DateConverter style the dates are written in
+ *   38  percent off     byte
+ *   39  (reserved)      byte
+ *   40  daily charge    long, cents
+ *   48  pre-discount    long, cents
+ *   56  discount        long, cents
+ *   64  final charge    long, cents
+ * </pre>
+ * The due date is not stored since it is always the checkout day plus the
+ * rental days.
+ *
+ * An AgreementRecord is a flyweight: wrap it around a buffer and offset, then
+ * either set it from an agreement or read fields straight from the buffer.
+ * The numeric getters never allocate, so one instance can be moved across
+ * millions of records (only the String and BigDecimal getters build objects).
+ */
+public class AgreementRecord {
+    public static final int SIZE = 72;
+
+    private static final int TOOL_CODE = 0;
+    private static final int TOOL_CODE_LENGTH = 8;
+    private static final int TOOL_BRAND = 8;
+    private static final int TOOL_BRAND_LENGTH = 16;
+    private static final int CHECKOUT_DAY = 24;
+    private static final int RENTAL_DAYS = 28;
+    private static final int CHARGE_DAYS = 32;
+    private static final int TOOL_TYPE = 36;
+    private static final int DATE_STYLE = 37;
+    private static final int PERCENT_DISCOUNT = 38;
+    private static final int DAILY_CHARGE = 40;
+    private static final int PRE_DISCOUNT_CHARGE = 48;
+    private static final int DISCOUNT_AMOUNT = 56;
+    private static final int FINAL_CHARGE = 64;
+
+    private static final ToolType[] TOOL_TYPES = ToolType.values();
+
+    private ByteBuffer source; // buffer last wrapped, as given
+    private ByteBuffer buffer; // view of source in record byte order
+    private int offset;
+
+    /**
+     * Points this flyweight at the record starting at the given offset
+     *
+     * @param buffer buffer holding the record (its own position, limit and
+     *               byte order are left untouched)
+     * @param offset index of the record's first byte
+     * @return this record
+     */
+    public AgreementRecord wrap(ByteBuffer buffer, int offset) {
+        if (buffer != source) {
+            source = buffer;
+            this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (offset < 0 || offset > buffer.capacity() - SIZE) {
+            throw new IndexOutOfBoundsException("No record at offset " + offset);
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Encodes an agreement into a new, standalone array
+     *
+     * @param agreement agreement to encode
+     * @return SIZE bytes holding the record
+     */
+    public static byte[] encode(RentalAgreement agreement) {
+        byte[] record = new byte[SIZE];
+        new AgreementRecord().wrap(ByteBuffer.wrap(record), 0).set(agreement);
+        return record;
+    }
+
+    /**
+     * Writes every field of an agreement into the wrapped record, calculating
+     * any derived fields that haven't been yet
+     *
+     * @param agreement agreement to encode
+     * @return this record
+     */
+    public AgreementRecord set(RentalAgreement agreement) {
+        putAscii(TOOL_CODE, TOOL_CODE_LENGTH, agreement.getToolCode());
+        putAscii(TOOL_BRAND, TOOL_BRAND_LENGTH, agreement.getToolBrand());
+        buffer.putInt(offset + CHECKOUT_DAY, agreement.getCheckoutDay());
+        buffer.putInt(offset + RENTAL_DAYS, agreement.getRentalDays());
+        buffer.putInt(offset + CHARGE_DAYS, agreement.getChargeDays());
+        buffer.put(offset + TOOL_TYPE, (byte) agreement.getToolType().ordinal());
+        buffer.put(offset + DATE_STYLE, (byte) DateConverter.dateStyle(agreement.getCheckoutDate()));
+        buffer.put(offset + PERCENT_DISCOUNT, agreement.getPercentDiscount().byteValue());
+        buffer.put(offset + PERCENT_DISCOUNT + 1, (byte) 0);
+        buffer.putLong(offset + DAILY_CHARGE, agreement.getToolType().getDailyChargeCents());
+        buffer.putLong(offset + PRE_DISCOUNT_CHARGE, agreement.getPreDiscountChargeCents());
+        buffer.putLong(offset + DISCOUNT_AMOUNT, agreement.getDiscountAmountCents());
+        buffer.putLong(offset + FINAL_CHARGE, agreement.getFinalChargeCents());
+        return this;
+    }
+
+    private void putAscii(int field, int length, String value) {
+        if (value.length() > length) {
+            throw new IllegalArgumentException("Too long for an agreement record: " + value);
+        }
+        for (int i = 0; i < length; i++) {
+            char c = i < value.length() ? value.charAt(i) : 0;
+            if (c > 0x7f) {
+                throw new IllegalArgumentException("Not ASCII: " + value);
+            }
+            buffer.put(offset + field + i, (byte) c);
+        }
+    }
+
+    private String getAscii(int field, int length) {
+        char[] chars = new char[length];
+        int count = 0;
+        for (; count < length; count++) {
+            byte b = buffer.get(offset + field + count);
+            if (b == 0) {
+                break;
+            }
+            chars[count] = (char) b;
+        }
+        return new String(chars, 0, count);
+    }
+
+    public String getToolCode() {
+        return getAscii(TOOL_CODE, TOOL_CODE_LENGTH);
+    }
+
+    /**
+     * Compares the tool code without building it
+     *
+     * @param toolCode code to compare against
+     * @return whether the record is for the given tool code
+     */
+    public boolean isToolCode(CharSequence toolCode) {
+        if (toolCode.length() > TOOL_CODE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < TOOL_CODE_LENGTH; i++) {
+            char c = i < toolCode.length() ? toolCode.charAt(i) : 0;
+            if (buffer.get(offset + TOOL_CODE + i) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public ToolType getToolType() {
+        return TOOL_TYPES[buffer.get(offset + TOOL_TYPE)];
+    }
+
+    public String getToolTypeName() {
+        return getToolType().getName();
+    }
+
+    public String getToolBrand() {
+        return getAscii(TOOL_BRAND, TOOL_BRAND_LENGTH);
+    }
+
+    public int getCheckoutDay() {
+        return buffer.getInt(offset + CHECKOUT_DAY);
+    }
+
+    public int getReturnDay() {
+        return getCheckoutDay() + getRentalDays();
+    }
+
+    public int getDateStyle() {
+        return buffer.get(offset + DATE_STYLE);
+    }
+
+    public String getCheckoutDate() {
+        return DateConverter.formatDate(getCheckoutDay(), getDateStyle());
+    }
+
+    public String getReturnDate() {
+        return DateConverter.formatDate(getReturnDay(), getDateStyle());
+    }
+
+    public int getRentalDays() {
+        return buffer.getInt(offset + RENTAL_DAYS);
+    }
+
+    public int getChargeDays() {
+        return buffer.getInt(offset + CHARGE_DAYS);
+    }
+
+    public int getPercentDiscount() {
+        return buffer.get(offset + PERCENT_DISCOUNT);
+    }
+
+    public long getDailyChargeCents() {
+        return buffer.getLong(offset + DAILY_CHARGE);
+    }
+
+    public long getPreDiscountChargeCents() {
+        return buffer.getLong(offset + PRE_DISCOUNT_CHARGE);
+    }
+
+    public long getDiscountAmountCents() {
+        return buffer.getLong(offset + DISCOUNT_AMOUNT);
+    }
+
+    public long getFinalChargeCents() {
+        return buffer.getLong(offset + FINAL_CHARGE);
+    }
+
+    public BigDecimal getDailyCharge() {
+        return Money.toBigDecimal(getDailyChargeCents());
+    }
+
+    public BigDecimal getPreDiscountCharge() {
+        return Money.toBigDecimal(getPreDiscountChargeCents());
+    }
+
+    public BigDecimal getDiscountAmount() {
+        return Money.toBigDecimal(getDiscountAmountCents());
+    }
+
+    public BigDecimal getFinalCharge() {
+        return Money.toBigDecimal(getFinalChargeCents());
+    }
+}
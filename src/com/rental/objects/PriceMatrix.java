@@ -0,0 +1,140 @@
+package com.rental.objects;
+
+import com.rental.util.ChargeDayCalculator;
+import com.rental.util.DateConverter;
+import com.rental.util.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Prices of every rental length from 1 day up to a maximum, for one tool,
+ * checkout date and discount, as shown on the checkout screen. The charge
+ * days of each length are found in a single walk over the days after
+ * checkout (each length is the one before plus its last day), so the whole
+ * matrix costs about as much as a single RentalAgreement.
+ *
+ * Lengths are looked up by number of days, so getFinalCharge(7) is the
+ * final charge of a 7 day rental.
+ */
+public class PriceMatrix {
+    private final String toolCode;
+    private final Tool tool;
+    private final String checkoutDate;
+    private final int checkoutDay;
+    private final int percentDiscount;
+    private final int[] chargeDays; // indexed by length - 1
+    private final long[] finalChargeCents;
+
+    /**
+     * Prices every length up to the rental days of already validated input
+     *
+     * @param input valid result of RentalAgreementFactory.validate
+     */
+    public PriceMatrix(ValidationResult input) {
+        if (!input.isValid()) {
+            throw new IllegalArgumentException(input.getErrorMessage());
+        }
+        toolCode = input.getToolCode();
+        tool = input.getTool();
+        checkoutDate = input.getCheckoutDate();
+        checkoutDay = input.getCheckoutDay();
+        percentDiscount = input.getPercentDiscount();
+
+        chargeDays = new int[input.getRentalDays()];
+        ChargeDayCalculator.calculateDaysToCharge(checkoutDay, tool.getType(), chargeDays);
+        finalChargeCents = new long[chargeDays.length];
+        for (int i = 0; i < chargeDays.length; i++) {
+            long preDiscountCents = preDiscountChargeCents(i + 1);
+            finalChargeCents[i] = preDiscountCents - discountCents(preDiscountCents);
+        }
+    }
+
+    private long preDiscountChargeCents(int rentalDays) {
+        return tool.getType().getDailyChargeCents() * getChargeDays(rentalDays);
+    }
+
+    private long discountCents(long preDiscountCents) {
+        return Money.discountCents(preDiscountCents,
+                                   percentDiscount * Money.BASIS_POINTS_PER_PERCENT);
+    }
+
+    public String getToolCode() {
+        return toolCode;
+    }
+
+    public Tool getTool() {
+        return tool;
+    }
+
+    public String getCheckoutDate() {
+        return checkoutDate;
+    }
+
+    public int getCheckoutDay() {
+        return checkoutDay;
+    }
+
+    public int getPercentDiscount() {
+        return percentDiscount;
+    }
+
+    /**
+     * @return the longest rental length priced
+     */
+    public int getMaxDays() {
+        return chargeDays.length;
+    }
+
+    /**
+     * @param rentalDays rental length, 1 up to getMaxDays
+     * @return due date of the rental, in the same form as the checkout date
+     */
+    public String getReturnDate(int rentalDays) {
+        checkLength(rentalDays);
+        return DateConverter.formatDate(checkoutDay + rentalDays, DateConverter.dateStyle(checkoutDate));
+    }
+
+    public int getChargeDays(int rentalDays) {
+        checkLength(rentalDays);
+        return chargeDays[rentalDays - 1];
+    }
+
+    public long getPreDiscountChargeCents(int rentalDays) {
+        return preDiscountChargeCents(rentalDays);
+    }
+
+    public long getDiscountAmountCents(int rentalDays) {
+        return discountCents(preDiscountChargeCents(rentalDays));
+    }
+
+    public long getFinalChargeCents(int rentalDays) {
+        checkLength(rentalDays);
+        return finalChargeCents[rentalDays - 1];
+    }
+
+    public BigDecimal getFinalCharge(int rentalDays) {
+        return Money.toBigDecimal(getFinalChargeCents(rentalDays));
+    }
+
+    /**
+     * @return charge days of every length, element n - 1 for an n day rental
+     */
+    public int[] getChargeDays() {
+        return chargeDays.clone();
+    }
+
+    /**
+     * @return final charges of every length in cents, element n - 1 for an n
+     *         day rental
+     */
+    public long[] getFinalChargeCents() {
+        return finalChargeCents.clone();
+    }
+
+    private void checkLength(int rentalDays) {
+        if (rentalDays < 1 || rentalDays > chargeDays.length) {
+            throw new IndexOutOfBoundsException("No price for " + rentalDays + " days, only 1-" +
+                                                chargeDays.length);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.rental.objects;
+
+/**
+ * Raw input for a single quote, exactly as received from the Point-of-Sales
+ * System (all values are sanitized when the quote is priced)
+ */
+public class QuoteRequest {
+    private final String toolCode;
+    private final String checkoutDate;
+    private final String rentalDays;
+    private final String percentDiscount;
+
+    public QuoteRequest(String toolCode, String checkoutDate,
+                        String rentalDays, String percentDiscount) {
+        this.toolCode = toolCode;
+        this.checkoutDate = checkoutDate;
+        this.rentalDays = rentalDays;
+        this.percentDiscount = percentDiscount;
+    }
+
+    public String getToolCode() {
+        return toolCode;
+    }
+
+    public String getCheckoutDate() {
+        return checkoutDate;
+    }
+
+    public String getRentalDays() {
+        return rentalDays;
+    }
+
+    public String getPercentDiscount() {
+        return percentDiscount;
+    }
+}
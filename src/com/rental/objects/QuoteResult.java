@@ -0,0 +1,43 @@
+package com.rental.objects;
+
+/**
+ * Outcome of pricing a single QuoteRequest: either the RentalAgreement that was
+ * created, or the reason the request was rejected (never both)
+ */
+public class QuoteResult {
+    private final RentalAgreement agreement; // null if the request was rejected
+    private final String error; // null if the request was priced
+
+    private QuoteResult(RentalAgreement agreement, String error) {
+        this.agreement = agreement;
+        this.error = error;
+    }
+
+    /**
+     * @param agreement agreement created from the request
+     * @return successful result holding the agreement
+     */
+    public static QuoteResult success(RentalAgreement agreement) {
+        return new QuoteResult(agreement, null);
+    }
+
+    /**
+     * @param error message describing why the request was rejected
+     * @return failed result holding the message
+     */
+    public static QuoteResult failure(String error) {
+        return new QuoteResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return agreement != null;
+    }
+
+    public RentalAgreement getAgreement() {
+        return agreement;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
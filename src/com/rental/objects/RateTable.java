@@ -0,0 +1,109 @@
+package com.rental.objects;
+
+/**
+ * Daily charge and charged classes of day (weekday, weekend, holiday) for each
+ * tool type, as a value that can be changed without touching ToolType. Used to
+ * reprice agreements under candidate rates; the rates agreements are actually
+ * priced at are always those of ToolType (see current).
+ *
+ * Rate tables are immutable: the with methods return a changed copy.
+ */
+public class RateTable {
+    private static final int TYPES = ToolType.values().length;
+
+    private final long[] dailyChargeCents;
+    private final boolean[] chargeWeekday;
+    private final boolean[] chargeWeekend;
+    private final boolean[] chargeHoliday;
+
+    private RateTable(long[] dailyChargeCents, boolean[] chargeWeekday,
+                      boolean[] chargeWeekend, boolean[] chargeHoliday) {
+        this.dailyChargeCents = dailyChargeCents;
+        this.chargeWeekday = chargeWeekday;
+        this.chargeWeekend = chargeWeekend;
+        this.chargeHoliday = chargeHoliday;
+    }
+
+    /**
+     * @return the rates of every ToolType as currently defined
+     */
+    public static RateTable current() {
+        RateTable table = new RateTable(new long[TYPES], new boolean[TYPES],
+                                        new boolean[TYPES], new boolean[TYPES]);
+        for (ToolType toolType : ToolType.values()) {
+            int i = toolType.ordinal();
+            table.dailyChargeCents[i] = toolType.getDailyChargeCents();
+            table.chargeWeekday[i] = toolType.isChargeWeekday();
+            table.chargeWeekend[i] = toolType.isChargeWeekend();
+            table.chargeHoliday[i] = toolType.isChargeHoliday();
+        }
+        return table;
+    }
+
+    /**
+     * @param toolType tool type to change
+     * @param cents new daily charge, in cents
+     * @return a copy of this table with the tool type's daily charge changed
+     */
+    public RateTable withDailyChargeCents(ToolType toolType, long cents) {
+        if (cents < 0) {
+            throw new IllegalArgumentException("Daily charge cannot be negative: " + cents);
+        }
+        RateTable table = copy();
+        table.dailyChargeCents[toolType.ordinal()] = cents;
+        return table;
+    }
+
+    /**
+     * @param toolType tool type to change
+     * @param weekday whether weekdays are charged
+     * @param weekend whether weekends are charged
+     * @param holiday whether holidays are charged
+     * @return a copy of this table with the tool type's charged days changed
+     */
+    public RateTable withChargeDays(ToolType toolType, boolean weekday, boolean weekend,
+                                    boolean holiday) {
+        RateTable table = copy();
+        int i = toolType.ordinal();
+        table.chargeWeekday[i] = weekday;
+        table.chargeWeekend[i] = weekend;
+        table.chargeHoliday[i] = holiday;
+        return table;
+    }
+
+    private RateTable copy() {
+        return new RateTable(dailyChargeCents.clone(), chargeWeekday.clone(),
+                             chargeWeekend.clone(), chargeHoliday.clone());
+    }
+
+    public long getDailyChargeCents(ToolType toolType) {
+        return dailyChargeCents[toolType.ordinal()];
+    }
+
+    public boolean isChargeWeekday(ToolType toolType) {
+        return chargeWeekday[toolType.ordinal()];
+    }
+
+    public boolean isChargeWeekend(ToolType toolType) {
+        return chargeWeekend[toolType.ordinal()];
+    }
+
+    public boolean isChargeHoliday(ToolType toolType) {
+        return chargeHoliday[toolType.ordinal()];
+    }
+
+    /**
+     * Counts the charged days of a rental period from its breakdown
+     *
+     * @param toolType type of tool rented
+     * @param weekdays weekdays (other than holidays) in the period
+     * @param weekends weekend days (other than holidays) in the period
+     * @param holidays holidays in the period
+     * @return number of days charged under this table
+     */
+    public int chargeDays(ToolType toolType, int weekdays, int weekends, int holidays) {
+        int i = toolType.ordinal();
+        return (chargeWeekday[i] ? weekdays : 0) + (chargeWeekend[i] ? weekends : 0) +
+               (chargeHoliday[i] ? holidays : 0);
+    }
+}
@@ -0,0 +1,344 @@
+package com.rental.objects;
+
+import com.rental.util.DateConverter;
+import com.rental.util.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the receipt for a RentalAgreement straight into a caller's
+ * Appendable, CharBuffer or (ASCII) ByteBuffer. The template is split into
+ * labels and fields once, with every label encoded to bytes up front, and
+ * numbers, amounts and the due date are written digit by digit, so rendering
+ * creates no objects (not even the agreement's lazy BigDecimal or date fields).
+ *
+ * Templates are text with fields in braces, e.g. "Due date: {dueDate}\n"
+ * (write {{ and }} for literal braces). The fields are toolCode, toolType,
+ * toolBrand, rentalDays, checkoutDate, dueDate, dailyCharge, chargeDays,
+ * preDiscountCharge, percentDiscount, discountAmount and finalCharge, with
+ * amounts written as dollars and cents like 3.58. Renderers are immutable and
+ * can be shared between threads.
+ */
+public class ReceiptRenderer {
+    /**
+     * The receipt written by RentalAgreement.toString
+     */
+    public static final String DEFAULT_TEMPLATE =
+            "========================================\n" +
+            "Tool code: {toolCode}\n" +
+            "Tool type: {toolType}\n" +
+            "Tool brand: {toolBrand}\n" +
+            "Rental days: {rentalDays}\n" +
+            "Check out date: {checkoutDate}\n" +
+            "Due date: {dueDate}\n" +
+            "Daily rental charge: ${dailyCharge}\n" +
+            "Charge days: {chargeDays}\n" +
+            "Pre-discount charge: ${preDiscountCharge}\n" +
+            "Discount percent: {percentDiscount}%\n" +
+            "Discount amount: ${discountAmount}\n" +
+            "Final charge: ${finalCharge}\n";
+
+    public static final ReceiptRenderer DEFAULT = new ReceiptRenderer(DEFAULT_TEMPLATE);
+
+    /**
+     * Values that can be placed in a template
+     */
+    private enum Field {
+        TOOL_CODE("toolCode"),
+        TOOL_TYPE("toolType"),
+        TOOL_BRAND("toolBrand"),
+        RENTAL_DAYS("rentalDays"),
+        CHECKOUT_DATE("checkoutDate"),
+        DUE_DATE("dueDate"),
+        DAILY_CHARGE("dailyCharge"),
+        CHARGE_DAYS("chargeDays"),
+        PRE_DISCOUNT_CHARGE("preDiscountCharge"),
+        PERCENT_DISCOUNT("percentDiscount"),
+        DISCOUNT_AMOUNT("discountAmount"),
+        FINAL_CHARGE("finalCharge");
+
+        private final String name;
+
+        Field(String name) {
+            this.name = name;
+        }
+    }
+
+    private final String template;
+    // The template is labels[0] fields[0] labels[1] fields[1] ... labels[n]
+    private final String[] labels;
+    private final byte[][] asciiLabels; // non-ASCII characters written as ?
+    private final Field[] fields;
+
+    /**
+     * @param template receipt text with fields in braces
+     * @throws IllegalArgumentException if a field is unknown or unclosed
+     */
+    public ReceiptRenderer(String template) {
+        this.template = template;
+        List<String> labelList = new ArrayList<>();
+        List<Field> fieldList = new ArrayList<>();
+        StringBuilder label = new StringBuilder();
+        int position = 0;
+        while (position < template.length()) {
+            char c = template.charAt(position);
+            if ((c == '{' || c == '}') && position + 1 < template.length() &&
+                template.charAt(position + 1) == c) {
+                label.append(c);
+                position += 2;
+            }
+            else if (c == '{') {
+                int close = template.indexOf('}', position);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed field in receipt template: " +
+                                                       template.substring(position));
+                }
+                fieldList.add(field(template.substring(position + 1, close)));
+                labelList.add(label.toString());
+                label.setLength(0);
+                position = close + 1;
+            }
+            else {
+                label.append(c);
+                position++;
+            }
+        }
+        labelList.add(label.toString());
+
+        labels = labelList.toArray(new String[0]);
+        fields = fieldList.toArray(new Field[0]);
+        asciiLabels = new byte[labels.length][];
+        for (int i = 0; i < labels.length; i++) {
+            asciiLabels[i] = labels[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private static Field field(String name) {
+        for (Field field : Field.values()) {
+            if (field.name.equals(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field in receipt template: {" + name + "}");
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @param agreement agreement to render
+     * @param out destination the receipt is appended to
+     * @throws IOException if the destination can't be written to
+     */
+    public void render(RentalAgreement agreement, Appendable out) throws IOException {
+        render(agreement, out, null);
+    }
+
+    /**
+     * @param agreement agreement to render
+     * @param out builder the receipt is appended to
+     * @return the builder
+     */
+    public StringBuilder render(RentalAgreement agreement, StringBuilder out) {
+        renderChars(agreement, out);
+        return out;
+    }
+
+    /**
+     * @param agreement agreement to render
+     * @param out buffer the receipt is put into, starting at its position
+     * @return the buffer, positioned just past the receipt
+     * @throws java.nio.BufferOverflowException if the receipt doesn't fit
+     */
+    public CharBuffer render(RentalAgreement agreement, CharBuffer out) {
+        renderChars(agreement, out);
+        return out;
+    }
+
+    /**
+     * Renders the receipt as ASCII bytes, with any other character written as ?
+     *
+     * @param agreement agreement to render
+     * @param out buffer the receipt is put into, starting at its position
+     * @return the buffer, positioned just past the receipt
+     * @throws java.nio.BufferOverflowException if the receipt doesn't fit
+     */
+    public ByteBuffer render(RentalAgreement agreement, ByteBuffer out) {
+        try {
+            render(agreement, null, out);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e); // only Appendables throw
+        }
+        return out;
+    }
+
+    private void renderChars(RentalAgreement agreement, Appendable out) {
+        try {
+            render(agreement, out, null);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e); // builders and buffers don't throw
+        }
+    }
+
+    /**
+     * Writes the receipt to whichever of chars or bytes isn't null. Passing
+     * both destinations around keeps a single copy of the rendering without
+     * allocating an adapter for either.
+     */
+    private void render(RentalAgreement agreement, Appendable chars, ByteBuffer bytes)
+            throws IOException {
+        long start = Metrics.start();
+        for (int i = 0; i < fields.length; i++) {
+            writeLabel(i, chars, bytes);
+            switch (fields[i]) {
+                case TOOL_CODE:
+                    writeText(agreement.getToolCode(), chars, bytes);
+                    break;
+                case TOOL_TYPE:
+                    writeText(agreement.getToolTypeName(), chars, bytes);
+                    break;
+                case TOOL_BRAND:
+                    writeText(agreement.getToolBrand(), chars, bytes);
+                    break;
+                case RENTAL_DAYS:
+                    writeNumber(agreement.getRentalDays(), chars, bytes);
+                    break;
+                case CHECKOUT_DATE:
+                    writeText(agreement.getCheckoutDate(), chars, bytes);
+                    break;
+                case DUE_DATE:
+                    writeDate(agreement.getCheckoutDay() + agreement.getRentalDays(),
+                              DateConverter.dateStyle(agreement.getCheckoutDate()), chars, bytes);
+                    break;
+                case DAILY_CHARGE:
+                    writeCents(agreement.getToolType().getDailyChargeCents(), chars, bytes);
+                    break;
+                case CHARGE_DAYS:
+                    writeNumber(agreement.chargeDays(), chars, bytes);
+                    break;
+                case PRE_DISCOUNT_CHARGE:
+                    writeCents(agreement.getPreDiscountChargeCents(), chars, bytes);
+                    break;
+                case PERCENT_DISCOUNT:
+                    writeNumber(agreement.getPercentDiscount(), chars, bytes);
+                    break;
+                case DISCOUNT_AMOUNT:
+                    writeCents(agreement.getDiscountAmountCents(), chars, bytes);
+                    break;
+                case FINAL_CHARGE:
+                    writeCents(agreement.getFinalChargeCents(), chars, bytes);
+                    break;
+            }
+        }
+        writeLabel(fields.length, chars, bytes);
+        Metrics.record(Metrics.Stage.RENDERING, start);
+    }
+
+    private void writeLabel(int label, Appendable chars, ByteBuffer bytes) throws IOException {
+        if (bytes != null) {
+            bytes.put(asciiLabels[label]);
+        }
+        else {
+            chars.append(labels[label]);
+        }
+    }
+
+    private static void writeText(String text, Appendable chars, ByteBuffer bytes)
+            throws IOException {
+        if (bytes == null) {
+            chars.append(text);
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            bytes.put((byte) (c > 0x7f ? '?' : c));
+        }
+    }
+
+    private static void writeChar(char c, Appendable chars, ByteBuffer bytes) throws IOException {
+        if (bytes != null) {
+            bytes.put((byte) c);
+        }
+        else {
+            chars.append(c);
+        }
+    }
+
+    /**
+     * Writes a number's digits from the most significant down, without a
+     * buffer to hold them
+     */
+    private static void writeNumber(long value, Appendable chars, ByteBuffer bytes)
+            throws IOException {
+        if (value < 0) {
+            writeChar('-', chars, bytes);
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            writeChar((char) ('0' + value / divisor % 10), chars, bytes);
+        }
+    }
+
+    /**
+     * Writes an amount the same as its BigDecimal (scale 2) would, e.g. 0.40
+     */
+    private static void writeCents(long cents, Appendable chars, ByteBuffer bytes)
+            throws IOException {
+        if (cents < 0) {
+            writeChar('-', chars, bytes);
+            cents = -cents;
+        }
+        writeNumber(cents / 100, chars, bytes);
+        writeChar('.', chars, bytes);
+        writeChar((char) ('0' + cents / 10 % 10), chars, bytes);
+        writeChar((char) ('0' + cents % 10), chars, bytes);
+    }
+
+    private static void writeTwoDigits(int value, Appendable chars, ByteBuffer bytes)
+            throws IOException {
+        writeChar((char) ('0' + value / 10), chars, bytes);
+        writeChar((char) ('0' + value % 10), chars, bytes);
+    }
+
+    /**
+     * Writes a date exactly as DateConverter.formatDate would
+     */
+    private static void writeDate(int epochDay, int style, Appendable chars, ByteBuffer bytes)
+            throws IOException {
+        int yearMonthDay = DateConverter.toYearMonthDay(epochDay);
+        int year = yearMonthDay / 10000;
+        int month = yearMonthDay / 100 % 100;
+        int day = yearMonthDay % 100;
+        if (style == DateConverter.STYLE_ISO) {
+            writeNumber(year, chars, bytes);
+            writeChar('-', chars, bytes);
+            writeTwoDigits(month, chars, bytes);
+            writeChar('-', chars, bytes);
+            writeTwoDigits(day, chars, bytes);
+            return;
+        }
+        writeNumber(month, chars, bytes);
+        writeChar('/', chars, bytes);
+        writeNumber(day, chars, bytes);
+        writeChar('/', chars, bytes);
+        if (style == DateConverter.STYLE_SHORT && year >= 2000 && year <= 2099) {
+            writeTwoDigits(year - 2000, chars, bytes);
+        }
+        else {
+            writeNumber(year, chars, bytes);
+        }
+    }
+}
@@ -1,90 +1,124 @@
 package com.rental.objects;
 
 import com.rental.util.ChargeDayCalculator;
+import com.rental.util.Constants;
 import com.rental.util.DateConverter;
+import com.rental.util.Metrics;
+import com.rental.util.Money;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import java.time.LocalDate;
 
 /**
- * Class representing a Rental Agreement. Calculates all desired fields
- * upon construction, and has a toString to allow easy output to command line
+ * Class representing a Rental Agreement. Validates its input upon construction,
+ * and has a toString to allow easy output to command line.
+ *
+ * The derived fields (return date, charge days and the charges) are either all
+ * calculated upon construction, or in lazy mode each is calculated the first
+ * time it is read, so a caller that only needs the final charge never formats
+ * a date and one that only needs the due date never does money math.
  */
 public class RentalAgreement {
+    // Comfortably holds the default receipt, so the builder rarely grows
+    private static final int RECEIPT_CAPACITY = 512;
+
     private final String toolCode;
     private final Tool tool;
     private final String checkoutDate;
-    private final String returnDate;
+    private final int checkoutDay; // checkout date as the number of days since 1/1/1970
     private final Integer rentalDays;
-    private final Integer chargeDays;
-    private final BigDecimal preDiscountCharge;
     private final Integer percentDiscount;
-    private final BigDecimal discountAmount;
-    private final BigDecimal finalCharge;
+
+    /* Derived fields, null (or -1) until first calculated. Each is immutable and
+       recalculating it gives the same value, so if several threads race to
+       calculate one they all see an equal value (volatile ensures the object
+       is fully visible to any thread that reads the reference). Charges are
+       calculated in cents, and only converted to BigDecimal when requested
+     */
+    private volatile String returnDate;
+    private volatile int chargeDays = -1;
+    private volatile BigDecimal preDiscountCharge;
+    private volatile BigDecimal discountAmount;
+    private volatile BigDecimal finalCharge;
 
     public RentalAgreement(String toolCode, Tool tool, String checkoutDate,
                            Integer rentalDays, Integer percentDiscount) {
+        this(toolCode, tool, checkoutDate, rentalDays, percentDiscount, false);
+    }
+
+    /**
+     * @param rentalDays number of days rented, 1 up to Constants.MAX_RENTAL_DAYS
+     * @param lazy if true, derived fields are calculated when first read rather
+     *             than upon construction
+     */
+    public RentalAgreement(String toolCode, Tool tool, String checkoutDate,
+                           Integer rentalDays, Integer percentDiscount, boolean lazy) {
+        // Checkout date is always parsed here so invalid dates are rejected
+        this(toolCode, tool, checkoutDate, DateConverter.toEpochDay(checkoutDate),
+             checkRentalDays(rentalDays), percentDiscount);
+        if (!lazy) {
+            calculateAll();
+        }
+    }
+
+    /**
+     * Creates an agreement from input that has already been validated, without
+     * parsing any of it again
+     *
+     * @param input valid result of RentalAgreementFactory.validate
+     * @param lazy if true, derived fields are calculated when first read rather
+     *             than upon construction
+     */
+    public RentalAgreement(ValidationResult input, boolean lazy) {
+        this(input.getToolCode(), input.getTool(), input.getCheckoutDate(), input.getCheckoutDay(),
+             input.getRentalDays(), input.getPercentDiscount());
+        if (!input.isValid()) {
+            throw new IllegalArgumentException(input.getErrorMessage());
+        }
+        if (!lazy) {
+            calculateAll();
+        }
+    }
+
+    private RentalAgreement(String toolCode, Tool tool, String checkoutDate, int checkoutDay,
+                            Integer rentalDays, Integer percentDiscount) {
         this.toolCode = toolCode;
         this.tool = tool;
         this.checkoutDate = checkoutDate;
+        this.checkoutDay = checkoutDay;
         this.rentalDays = rentalDays;
         this.percentDiscount = percentDiscount;
+    }
 
-        /* Some of these calculations are done in the constructor to allow all fields
-         * while also avoiding recalculating if multiple years (hence multiple
-         * calender objects) are required
-         */
-
-        // Running total of each type of day in rental period
-        ChargeDayCalculator.Days days = new ChargeDayCalculator.Days();
-        // Remaining number of days needing to be counted
-        int remainingRentalDays = rentalDays;
-        // Calender object for the current year being counted
-        Calendar calendar = DateConverter.createCalenderFromString(checkoutDate);
-
-        int daysLeftInYear = (calendar.get(Calendar.YEAR) % 4 == 0 ? 366 : 365) -
-                calendar.get(Calendar.DAY_OF_YEAR);
-        // Need to count first day in calender if a year has wrapped
-        boolean yearWrap = false;
-
-        // If the rental period extends beyond current year, will handle each year in turn
-        while (remainingRentalDays > daysLeftInYear) {
-            if (!yearWrap) {
-                yearWrap = true;
-            }
-            // Counts number of each type of day left in the year
-            days.add(ChargeDayCalculator.calculateChargeDays(calendar, daysLeftInYear));
-            // Updates number of days required to count
-            remainingRentalDays -= daysLeftInYear;
-            // Constructs a new calender object for the next year, starting on January 1st
-            calendar = new GregorianCalendar(calendar.get(Calendar.YEAR) + 1, 0, 1);
-            // Number of days in year, depending on if it contains Leap Day
-            daysLeftInYear = calendar.get(Calendar.YEAR) % 4 == 0 ? 366 : 365;
+    /**
+     * Rejects rentals of no days or longer than the factory accepts, so the
+     * due day (checkout day plus rental days) can't overflow
+     */
+    private static Integer checkRentalDays(Integer rentalDays) {
+        if (rentalDays < 1 || rentalDays > Constants.MAX_RENTAL_DAYS) {
+            throw new IllegalArgumentException(Constants.BAD_RENTAL_DAYS);
         }
-        // Last year to count, rental period expires in year represented by the calender
-        days.add(ChargeDayCalculator.calculateChargeDays(calendar, remainingRentalDays));
-
-        // Based on number of each type of day in period, how many to charge
-        chargeDays = ChargeDayCalculator.calculateDaysToCharge(days, tool.getType());
-        // Finds and formats return date for the tool
-        returnDate = DateConverter.getReturnDate(
-                calendar, remainingRentalDays - (yearWrap ? 1 : 0));
+        return rentalDays;
+    }
 
-        // Daily charge x number of chargeable days
-        preDiscountCharge = getDailyCharge().multiply(BigDecimal.valueOf(chargeDays));
-        // Pre-discount charge x Percent discount x .01 (half-rounded up to cents)
-        discountAmount = preDiscountCharge.multiply(BigDecimal.valueOf(
-                percentDiscount, 2)).setScale(2, RoundingMode.HALF_UP);
-        // Pre-discount charge - discount amount
-        finalCharge = preDiscountCharge.subtract(discountAmount);
+    /**
+     * Populates every derived field
+     */
+    private void calculateAll() {
+        getReturnDate();
+        getPreDiscountCharge();
+        getDiscountAmount();
+        getFinalCharge();
     }
 
     public String getToolCode() {
         return toolCode;
     }
 
+    public ToolType getToolType() {
+        return tool.getType();
+    }
+
     public String getToolTypeName() {
         return tool.getType().getName();
     }
@@ -97,6 +131,22 @@ public class RentalAgreement {
         return checkoutDate;
     }
 
+    public int getCheckoutDay() {
+        return checkoutDay;
+    }
+
+    public LocalDate getCheckoutLocalDate() {
+        return DateConverter.toLocalDate(checkoutDay);
+    }
+
+    /**
+     * @return the due date as a LocalDate, rather than formatted like the
+     *         checkout date
+     */
+    public LocalDate getReturnLocalDate() {
+        return DateConverter.toLocalDate(checkoutDay + rentalDays);
+    }
+
     public BigDecimal getDailyCharge() {
         return tool.getType().getDailyCharge();
     }
@@ -110,40 +160,86 @@ public class RentalAgreement {
     }
 
     public String getReturnDate() {
-        return returnDate;
+        String value = returnDate;
+        if (value == null) {
+            // Finds and formats return date for the tool, in the same form as the checkout date
+            value = DateConverter.formatDate(checkoutDay + rentalDays,
+                                             DateConverter.dateStyle(checkoutDate));
+            returnDate = value;
+        }
+        return value;
     }
 
     public Integer getChargeDays() {
-        return chargeDays;
+        return chargeDays();
+    }
+
+    public long getPreDiscountChargeCents() {
+        // Daily charge x number of chargeable days
+        return tool.getType().getDailyChargeCents() * chargeDays();
+    }
+
+    public long getDiscountAmountCents() {
+        // Pre-discount charge x Percent discount x .01 (half-rounded up to cents)
+        return Money.discountCents(getPreDiscountChargeCents(),
+                                   percentDiscount * Money.BASIS_POINTS_PER_PERCENT);
+    }
+
+    public long getFinalChargeCents() {
+        // Pre-discount charge - discount amount
+        return getPreDiscountChargeCents() - getDiscountAmountCents();
     }
 
     public BigDecimal getPreDiscountCharge() {
-        return preDiscountCharge;
+        BigDecimal value = preDiscountCharge;
+        if (value == null) {
+            long start = Metrics.start();
+            value = Money.toBigDecimal(getPreDiscountChargeCents());
+            preDiscountCharge = value;
+            Metrics.record(Metrics.Stage.MONEY, start);
+        }
+        return value;
     }
 
     public BigDecimal getDiscountAmount() {
-        return discountAmount;
+        BigDecimal value = discountAmount;
+        if (value == null) {
+            long start = Metrics.start();
+            value = Money.toBigDecimal(getDiscountAmountCents());
+            discountAmount = value;
+            Metrics.record(Metrics.Stage.MONEY, start);
+        }
+        return value;
     }
 
     public BigDecimal getFinalCharge() {
-        return finalCharge;
+        BigDecimal value = finalCharge;
+        if (value == null) {
+            long start = Metrics.start();
+            value = Money.toBigDecimal(getFinalChargeCents());
+            finalCharge = value;
+            Metrics.record(Metrics.Stage.MONEY, start);
+        }
+        return value;
+    }
+
+    int chargeDays() {
+        int value = chargeDays;
+        if (value < 0) {
+            // Based on number of each type of day in period, how many to charge
+            value = ChargeDayCalculator.calculateDaysToCharge(
+                    checkoutDay, rentalDays, tool.getType());
+            chargeDays = value;
+        }
+        return value;
     }
 
+    /**
+     * @return the receipt for the agreement (see ReceiptRenderer to write it
+     *         somewhere without building a String)
+     */
     @Override
     public String toString() {
-        return new StringBuilder("========================================\n")
-                .append("Tool code: ").append(toolCode).append("\n")
-                .append("Tool type: ").append(getToolTypeName()).append("\n")
-                .append("Tool brand: ").append(getToolBrand()).append("\n")
-                .append("Rental days: ").append(rentalDays).append("\n")
-                .append("Check out date: ").append(checkoutDate).append("\n")
-                .append("Due date: ").append(returnDate).append("\n")
-                .append("Daily rental charge: $").append(getDailyCharge()).append("\n")
-                .append("Charge days: ").append(chargeDays).append("\n")
-                .append("Pre-discount charge: $").append(preDiscountCharge).append("\n")
-                .append("Discount percent: ").append(percentDiscount).append("%\n")
-                .append("Discount amount: $").append(discountAmount).append("\n")
-                .append("Final charge: $").append(finalCharge).append("\n")
-                .toString();
+        return ReceiptRenderer.DEFAULT.render(this, new StringBuilder(RECEIPT_CAPACITY)).toString();
     }
 }
@@ -0,0 +1,54 @@
+package com.rental.objects;
+
+/**
+ * A booking of one unit of a tool for a range of days. Ranges are half-open:
+ * the unit is out from the first day up to (but not including) the due day,
+ * so another booking of the same unit can start on the day this one is due.
+ */
+public class Reservation {
+    private final String toolCode;
+    private final int unit;
+    private final int fromDay;
+    private final int dueDay;
+
+    public Reservation(String toolCode, int unit, int fromDay, int dueDay) {
+        this.toolCode = toolCode;
+        this.unit = unit;
+        this.fromDay = fromDay;
+        this.dueDay = dueDay;
+    }
+
+    public String getToolCode() {
+        return toolCode;
+    }
+
+    /**
+     * @return index of the unit booked, from 0 up to the tool's unit count
+     */
+    public int getUnit() {
+        return unit;
+    }
+
+    /**
+     * @return first epoch day the unit is booked
+     */
+    public int getFromDay() {
+        return fromDay;
+    }
+
+    /**
+     * @return epoch day the unit is due back, which is not itself booked
+     */
+    public int getDueDay() {
+        return dueDay;
+    }
+
+    /**
+     * @param fromDay first epoch day of another range
+     * @param dueDay epoch day just past the end of the other range
+     * @return whether this booking shares any day with the range
+     */
+    public boolean overlaps(int fromDay, int dueDay) {
+        return this.fromDay < dueDay && fromDay < this.dueDay;
+    }
+}
@@ -1,6 +1,7 @@
 package com.rental.objects;
 
 import com.rental.util.Constants;
+import com.rental.util.Money;
 
 import java.math.BigDecimal;
 
@@ -8,23 +9,25 @@ import java.math.BigDecimal;
  * Enum class to hold properties associated with the defined types of tools
  */
 public enum ToolType {
-    LADDER(Constants.LADDER, true, true, false, BigDecimal.valueOf(1.99)),
-    CHAINSAW(Constants.CHAINSAW, true, false, true, BigDecimal.valueOf(1.49)),
-    JACKHAMMER(Constants.JACKHAMMER, true, false, false, BigDecimal.valueOf(2.99));
+    LADDER(Constants.LADDER, true, true, false, 199),
+    CHAINSAW(Constants.CHAINSAW, true, false, true, 149),
+    JACKHAMMER(Constants.JACKHAMMER, true, false, false, 299);
 
     private final String name; // String of the name of the tool type
     private final boolean chargeWeekday; // Whether or not the tool has a weekday charge
     private final boolean chargeWeekend; // Whether or not the tool has a weekend charge
     private final boolean chargeHoliday; // Whether or not the tool has a holiday charge
+    private final long dailyChargeCents; // The daily charge amount of the tool, in cents
     private final BigDecimal dailyCharge; // The daily charge amount of the tool
 
     ToolType(String name, boolean chargeWeekday, boolean chargeWeekend,
-                     boolean chargeHoliday, BigDecimal dailyCharge) {
+                     boolean chargeHoliday, long dailyChargeCents) {
         this.name = name;
         this.chargeWeekday = chargeWeekday;
         this.chargeWeekend = chargeWeekend;
         this.chargeHoliday = chargeHoliday;
-        this.dailyCharge = dailyCharge;
+        this.dailyChargeCents = dailyChargeCents;
+        this.dailyCharge = Money.toBigDecimal(dailyChargeCents);
     }
 
     public String getName() {
@@ -43,6 +46,10 @@ public enum ToolType {
         return chargeHoliday;
     }
 
+    public long getDailyChargeCents() {
+        return dailyChargeCents;
+    }
+
     public BigDecimal getDailyCharge() {
         return dailyCharge;
     }
@@ -0,0 +1,51 @@
+package com.rental.objects;
+
+import com.rental.util.Constants;
+import com.rental.util.DateConverter;
+
+/**
+ * Enum class of the ways quote input can be invalid. Each error has its own bit
+ * so every failed field can be reported together in a single int.
+ */
+public enum ValidationError {
+    UNKNOWN_TOOL_CODE(Constants.BAD_TOOL_CODE),
+    BAD_RENTAL_DAYS(Constants.BAD_RENTAL_DAYS),
+    BAD_PERCENT_DISCOUNT(Constants.BAD_PERCENT_DISCOUNT),
+    INVALID_DATE_FORMAT(Constants.INVALID_DATE_FORMAT),
+    INVALID_MONTH(Constants.INVALID_MONTH),
+    INVALID_DAY(Constants.INVALID_DAY),
+    INVALID_YEAR(Constants.INVALID_YEAR),
+    INVALID_LEAP_DAY(Constants.INVALID_LEAP_DAY);
+
+    private final String message; // Message shown to the user for the error
+    private final int bit; // Bit representing the error in a set of errors
+
+    ValidationError(String message) {
+        this.message = message;
+        this.bit = 1 << ordinal();
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public int getBit() {
+        return bit;
+    }
+
+    /**
+     * Finds the error matching a DateConverter.parseEpochDay error code
+     *
+     * @param dateError error code returned when parsing a date
+     * @return associated error
+     */
+    public static ValidationError fromDateError(int dateError) {
+        switch (dateError) {
+            case DateConverter.INVALID_MONTH: return INVALID_MONTH;
+            case DateConverter.INVALID_DAY: return INVALID_DAY;
+            case DateConverter.INVALID_YEAR: return INVALID_YEAR;
+            case DateConverter.INVALID_LEAP_DAY: return INVALID_LEAP_DAY;
+            default: return INVALID_DATE_FORMAT;
+        }
+    }
+}
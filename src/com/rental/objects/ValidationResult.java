@@ -0,0 +1,102 @@
+package com.rental.objects;
+
+/**
+ * Outcome of validating the input for a quote: the sanitized values if every
+ * field is valid, and otherwise the set of every field that failed.
+ *
+ * Results are mutable so a caller validating many quotes can reuse a single
+ * instance, making validation of valid input free of allocation.
+ */
+public class ValidationResult {
+    private String toolCode;
+    private Tool tool; // null if the tool code is unknown
+    private String checkoutDate;
+    private int checkoutDay; // checkout date as the number of days since 1/1/1970
+    private int rentalDays;
+    private int percentDiscount;
+    private int errors; // bits of each ValidationError found, 0 if valid
+
+    /**
+     * Replaces the contents of this result
+     *
+     * @param toolCode tool code as given
+     * @param tool tool associated with the code, or null if unknown
+     * @param checkoutDate checkout date as given
+     * @param checkoutDay parsed checkout date
+     * @param rentalDays parsed number of rental days
+     * @param percentDiscount parsed percentage discount
+     * @param errors bits of each ValidationError found
+     * @return this result
+     */
+    public ValidationResult set(String toolCode, Tool tool, String checkoutDate, int checkoutDay,
+                                int rentalDays, int percentDiscount, int errors) {
+        this.toolCode = toolCode;
+        this.tool = tool;
+        this.checkoutDate = checkoutDate;
+        this.checkoutDay = checkoutDay;
+        this.rentalDays = rentalDays;
+        this.percentDiscount = percentDiscount;
+        this.errors = errors;
+        return this;
+    }
+
+    public boolean isValid() {
+        return errors == 0;
+    }
+
+    public boolean hasError(ValidationError error) {
+        return (errors & error.getBit()) != 0;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    public String getToolCode() {
+        return toolCode;
+    }
+
+    public Tool getTool() {
+        return tool;
+    }
+
+    public String getCheckoutDate() {
+        return checkoutDate;
+    }
+
+    public int getCheckoutDay() {
+        return checkoutDay;
+    }
+
+    public int getRentalDays() {
+        return rentalDays;
+    }
+
+    public int getPercentDiscount() {
+        return percentDiscount;
+    }
+
+    /**
+     * Builds the message for every error found, in field order
+     *
+     * @return messages separated by "; ", or null if the input is valid
+     */
+    public String getErrorMessage() {
+        if (isValid()) {
+            return null;
+        }
+        StringBuilder message = new StringBuilder();
+        for (ValidationError error : ValidationError.values()) {
+            if (hasError(error)) {
+                if (message.length() > 0) {
+                    message.append("; ");
+                }
+                message.append(error.getMessage());
+                if (error == ValidationError.UNKNOWN_TOOL_CODE) {
+                    message.append(toolCode);
+                }
+            }
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,173 @@
+package com.rental.util;
+
+import com.rental.objects.ToolType;
+
+/**
+ * Precomputed calendar used to count each type of day in a rental period.
+ * Every day of one 400 year Gregorian cycle is classified once as a weekday,
+ * weekend or holiday when the calendar is built, and a running total of each
+ * type of day is stored alongside it. Since a cycle is a whole number of weeks
+ * and the holiday rules repeat with it, any other day is classified the same as
+ * its counterpart in the table. The number of any type of day before a given
+ * day is then the whole cycles preceding it times the per-cycle total, plus one
+ * table entry, so a range costs two lookups no matter how many years it spans.
+ */
+public class ChargeCalendar {
+    // Day classes, also used as the offset of each running total in the table
+    public static final int WEEKDAY = 0;
+    public static final int WEEKEND = 1;
+    public static final int HOLIDAY = 2;
+    private static final int CLASSES = 3;
+    // Days in a 400 year Gregorian cycle (146097 = 20871 weeks)
+    private static final int CYCLE_DAYS = 146097;
+    private static final int CYCLE_YEARS = 400;
+
+    private final int firstDay; // epoch day of the first day in the table
+    /* Running totals of each class, interleaved so the three totals for a day
+       share a cache line: totals[3 * i + class] is the count of that class of day
+       in the i days preceding firstDay + i
+     */
+    private final int[] totals;
+
+    /**
+     * Builds the calendar observing the default holidays
+     */
+    public ChargeCalendar() {
+        this(HolidayCalendar.defaultCalendar());
+    }
+
+    /**
+     * Builds the calendar observing the given holidays
+     *
+     * @param holidayCalendar rules for the holidays to observe
+     */
+    public ChargeCalendar(HolidayCalendar holidayCalendar) {
+        firstDay = DateConverter.toEpochDay(Constants.CALENDAR_FIRST_YEAR, 1, 1);
+
+        boolean[] holidays = new boolean[CYCLE_DAYS];
+        for (int year = Constants.CALENDAR_FIRST_YEAR;
+             year < Constants.CALENDAR_FIRST_YEAR + CYCLE_YEARS; year++) {
+            for (int holiday : holidayCalendar.compile(year)) {
+                // An observed holiday moved out of the cycle is the same day of the next one
+                holidays[Math.floorMod(holiday - firstDay, CYCLE_DAYS)] = true;
+            }
+        }
+
+        totals = new int[CLASSES * (CYCLE_DAYS + 1)];
+        for (int i = 0; i < CYCLE_DAYS; i++) {
+            int current = CLASSES * i;
+            int next = current + CLASSES;
+            totals[next + WEEKDAY] = totals[current + WEEKDAY];
+            totals[next + WEEKEND] = totals[current + WEEKEND];
+            totals[next + HOLIDAY] = totals[current + HOLIDAY];
+            totals[next + classify(firstDay + i, holidays[i])]++;
+        }
+    }
+
+    /**
+     * Counts each type of day in a rental period, which starts the day after
+     * checkout and includes the due date
+     *
+     * @param checkoutDay epoch day the tool is checked out
+     * @param rentalDays number of days the tool is rented for
+     * @return a Days helper class that contains the number of each type of day
+     */
+    public ChargeDayCalculator.Days countDays(int checkoutDay, int rentalDays) {
+        long from = startDay(checkoutDay, rentalDays);
+        long to = from + rentalDays;
+        return new ChargeDayCalculator.Days(count(WEEKDAY, from, to),
+                                            count(WEEKEND, from, to),
+                                            count(HOLIDAY, from, to));
+    }
+
+    /**
+     * Counts the days in a rental period that are charged for the given type of
+     * tool, without building the intermediate Days breakdown
+     *
+     * @param checkoutDay epoch day the tool is checked out
+     * @param rentalDays number of days the tool is rented for
+     * @param toolType type of tool being rented
+     * @return count of the number of days that are to be charged
+     */
+    public int countChargeDays(int checkoutDay, int rentalDays, ToolType toolType) {
+        long from = startDay(checkoutDay, rentalDays);
+        long to = from + rentalDays;
+        int chargeDays = 0;
+        if (toolType.isChargeWeekday()) {
+            chargeDays += count(WEEKDAY, from, to);
+        }
+        if (toolType.isChargeWeekend()) {
+            chargeDays += count(WEEKEND, from, to);
+        }
+        if (toolType.isChargeHoliday()) {
+            chargeDays += count(HOLIDAY, from, to);
+        }
+        return chargeDays;
+    }
+
+    /**
+     * Counts the charged days of every rental length from 1 day up, in a
+     * single walk over the days following checkout
+     *
+     * @param checkoutDay epoch day the tool is checked out
+     * @param toolType type of tool being rented
+     * @param chargeDays filled so chargeDays[n - 1] is the count for an n day
+     *                   rental, up to its length
+     */
+    public void countChargeDays(int checkoutDay, ToolType toolType, int[] chargeDays) {
+        int weekday = toolType.isChargeWeekday() ? 1 : 0;
+        int weekend = toolType.isChargeWeekend() ? 1 : 0;
+        int holiday = toolType.isChargeHoliday() ? 1 : 0;
+        int index = Math.floorMod(startDay(checkoutDay, chargeDays.length) - firstDay, CYCLE_DAYS);
+        int charged = 0;
+        for (int length = 0; length < chargeDays.length; length++) {
+            // A day's class is whichever running total it increments
+            int current = CLASSES * index;
+            int next = current + CLASSES;
+            charged += weekday * (totals[next + WEEKDAY] - totals[current + WEEKDAY]) +
+                       weekend * (totals[next + WEEKEND] - totals[current + WEEKEND]) +
+                       holiday * (totals[next + HOLIDAY] - totals[current + HOLIDAY]);
+            chargeDays[length] = charged;
+            index = index + 1 == CYCLE_DAYS ? 0 : index + 1;
+        }
+    }
+
+    /**
+     * Finds the epoch day of the first day of a rental period
+     */
+    private static long startDay(int checkoutDay, int rentalDays) {
+        if (rentalDays < 0) {
+            throw new RuntimeException(Constants.BAD_RENTAL_DAYS);
+        }
+        return checkoutDay + 1L;
+    }
+
+    /**
+     * Counts one class of day from the start day up to (not including) the end day
+     */
+    private int count(int dayClass, long from, long to) {
+        return (int) (total(dayClass, to) - total(dayClass, from));
+    }
+
+    /**
+     * Counts one class of day in every day preceding the given one, since the
+     * start of the table's cycle
+     */
+    private long total(int dayClass, long epochDay) {
+        long offset = epochDay - firstDay;
+        long cycles = Math.floorDiv(offset, CYCLE_DAYS);
+        int index = Math.floorMod(offset, CYCLE_DAYS);
+        return cycles * totals[CLASSES * CYCLE_DAYS + dayClass] + totals[CLASSES * index + dayClass];
+    }
+
+    /**
+     * Holidays are always charged as holidays, even if observed on a weekend
+     */
+    private static int classify(int epochDay, boolean holiday) {
+        if (holiday) {
+            return HOLIDAY;
+        }
+        int dayOfWeek = DateConverter.dayOfWeek(epochDay);
+        return dayOfWeek == 1 || dayOfWeek == 7 ? WEEKEND : WEEKDAY;
+    }
+}
@@ -0,0 +1,146 @@
+package com.rental.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the Days breakdown for (checkout date, rental days) pairs,
+ * safe for use by any number of threads without locking.
+ *
+ * Entries live in a fixed size 2-way set associative table, so the cache never
+ * holds more than its capacity. Each entry counts how often it is hit, and when
+ * a set is full the less frequently used entry is evicted (the survivor's count
+ * is halved, so entries that were popular long ago eventually make room).
+ */
+public class ChargeDayCache {
+    private static final int WAYS = 2;
+    private static final int MAX_FREQUENCY = 255;
+    // Sets are picked with 24 bits of the key's hash, so more would never be used
+    private static final int MAX_SETS = 1 << 24;
+
+    private final ChargeCalendar calendar; // calculates breakdowns that aren't cached
+    private final AtomicReferenceArray<Entry> entries;
+    private final int setMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity maximum number of entries (rounded up to a power of 2, of
+     *                 at least 2 and at most 2^25)
+     * @param calendar calendar used to calculate breakdowns on a miss
+     */
+    public ChargeDayCache(int capacity, ChargeCalendar calendar) {
+        int needed = (int) Math.min(((long) capacity + WAYS - 1) / WAYS, MAX_SETS);
+        int sets = needed <= 1 ? 1 : Integer.highestOneBit(needed - 1) << 1;
+        this.calendar = calendar;
+        this.entries = new AtomicReferenceArray<>(sets * WAYS);
+        this.setMask = sets - 1;
+    }
+
+    /**
+     * Looks up the breakdown of a rental period, calculating and caching it if
+     * it isn't already cached
+     *
+     * @param checkoutDay epoch day the tool is checked out
+     * @param rentalDays number of days the tool is rented for
+     * @return a new Days object (safe for the caller to modify)
+     */
+    public ChargeDayCalculator.Days get(int checkoutDay, int rentalDays) {
+        long key = (long) checkoutDay << 32 | (rentalDays & 0xFFFFFFFFL);
+        int first = set(key) * WAYS;
+
+        for (int way = first; way < first + WAYS; way++) {
+            Entry entry = entries.get(way);
+            if (entry != null && entry.key == key) {
+                hits.increment();
+                if (entry.frequency < MAX_FREQUENCY) {
+                    entry.frequency++; // racy on purpose, the count is only a hint
+                }
+                return new ChargeDayCalculator.Days(entry.weekdays, entry.weekends, entry.holidays);
+            }
+        }
+
+        misses.increment();
+        ChargeDayCalculator.Days days = calendar.countDays(checkoutDay, rentalDays);
+        insert(first, new Entry(key, days));
+        return days;
+    }
+
+    /**
+     * Places an entry in its set, evicting the less frequently used entry if the
+     * set is full
+     */
+    private void insert(int first, Entry entry) {
+        int victim = first;
+        Entry victimEntry = entries.get(first);
+        for (int way = first + 1; victimEntry != null && way < first + WAYS; way++) {
+            Entry candidate = entries.get(way);
+            if (candidate == null || candidate.frequency < victimEntry.frequency) {
+                victim = way;
+                victimEntry = candidate;
+            }
+        }
+        if (victimEntry != null) {
+            evictions.increment();
+            // Age the rest of the set so a formerly hot entry doesn't stay forever
+            for (int way = first; way < first + WAYS; way++) {
+                Entry survivor = entries.get(way);
+                if (way != victim && survivor != null) {
+                    survivor.frequency >>>= 1;
+                }
+            }
+        }
+        entries.set(victim, entry);
+    }
+
+    private int set(long key) {
+        // Mixes the bits so nearby dates and lengths spread across sets
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 40) & setMask;
+    }
+
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return fraction of look-ups that were hits, or 0 if there were none
+     */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Cached breakdown. Counts are immutable, the frequency is only a hint.
+     */
+    private static final class Entry {
+        final long key;
+        final int weekdays;
+        final int weekends;
+        final int holidays;
+        int frequency;
+
+        Entry(long key, ChargeDayCalculator.Days days) {
+            this.key = key;
+            this.weekdays = days.weekdays;
+            this.weekends = days.weekends;
+            this.holidays = days.holidays;
+        }
+    }
+}
@@ -2,176 +2,126 @@ package com.rental.util;
 
 import com.rental.objects.ToolType;
 
+import java.time.LocalDate;
 import java.util.Calendar;
 
 /**
  * Utility class responsible for the logic for calculating if a specific day
- * should be charged or not. Everything is done based on the day of the current
- * year (if the range spans multiple years, each year is handled separately
- * and summed). This is used to identify which day of the year each holiday
- * is observed, as well as based on which day of the week the year starts on,
- * each day can be identified as a weekday/weekend.
+ * should be charged or not. Every day in the supported range is classified
+ * ahead of time by a ChargeCalendar, so counting the days in a rental period
+ * takes the same time regardless of its length or how many years it spans.
  */
 public class ChargeDayCalculator {
+    // Calendar covering every supported checkout date, plus room for long rentals
+    private static final ChargeCalendar CALENDAR = new ChargeCalendar();
+    /* Optional cache of breakdowns for repeated rental periods, null when disabled.
+       Disabled unless a size is given through the system property, since a look-up
+       in the calendar is already only a few array reads
+     */
+    private static volatile ChargeDayCache cache =
+            createCache(Integer.getInteger(Constants.CHARGE_DAY_CACHE_PROPERTY, 0));
+
     /**
-     * Calculates the number of each type of day for a given year
+     * Calculates the number of each type of day in a rental period.
+     * Compatibility adapter for Calendar callers, prefer an epoch day.
      *
      * @param calendar contains the start day to begin counting
-     * @param chargeDays number of days in the given year to check
-     * @return a Days helper class the contains the number of each type of day
+     * @param chargeDays number of days after the start day to check
+     * @return a Days helper class that contains the number of each type of day
      */
     public static Days calculateChargeDays(Calendar calendar, int chargeDays) {
-        // day of the week the year starts on (1-Sunday ... 7-Saturday)
-        int yearStartDayOfWeek = calcYearStartDayOfWeek(calendar);
-        // day of the year which the 4th of July is observed
-        int fourthOfJulyDayOfYear = calculateFourthOfJulyOfYear(calendar, yearStartDayOfWeek);
-        // day of the year that Labor Day falls on
-        int laborDayDayDayOfYear = calculateLaborDayOfYear(calendar, yearStartDayOfWeek);
-
-        /**
-         * Every week besides border weeks contains 5 weekdays and 2 weekends.
-         * It is always possible to consider one side a full week
-         * (if range is at least 7), so only have to individually check
-         * a single end of the range.
-         */
-        int weeks = chargeDays / 7; // counts number of full 7 day weeks
-        // Handles the "edge days" that do not complete a full week
-        Days days = calculatePartialWeek(calendar.get(Calendar.DAY_OF_WEEK),
-                                    chargeDays % 7);
-        days.addWeeks(weeks); // add 5 weekdays and 2 weekends for each full week
-
-        /**
-         * Based on our rules, each holiday will always replace a weekday,
-         * so if either of the holidays for the current year fall in our date range,
-         * replace a weekday with a holiday
-         */
-        if (fourthOfJulyDayOfYear > calendar.get(Calendar.DAY_OF_YEAR) &&
-            fourthOfJulyDayOfYear < calendar.get(Calendar.DAY_OF_YEAR) + chargeDays) {
-            days.addHoliday();
-        }
-
-        if (laborDayDayDayOfYear > calendar.get(Calendar.DAY_OF_YEAR) &&
-            laborDayDayDayOfYear < calendar.get(Calendar.DAY_OF_YEAR) + chargeDays) {
-            days.addHoliday();
-        }
-
-        return days;
+        return calculateChargeDays(DateConverter.toEpochDay(calendar), chargeDays);
     }
 
     /**
-     * Calculates which day of the year the 4th of July falls on
+     * Calculates the number of each type of day in a rental period
      *
-     * @param calendar contains the year in question
-     * @param yearStartDay the day of the week the year starts on
-     * @return the day of the year to observe July 4th on
+     * @param checkout the day the tool is checked out
+     * @param rentalDays number of days after checkout to check
+     * @return a Days helper class that contains the number of each type of day
      */
-    private static int calculateFourthOfJulyOfYear(Calendar calendar, int yearStartDay) {
-        /* July 4th will either be the 185th or 186th day of the year depending
-           Leap Day
-        */
-        int dayOfYear = calendar.get(Calendar.YEAR) % 4 == 0 ? 186 : 185;
-        /* Find the day of the week for the holiday, but if it falls on a weekend
-         change the day it is observed to the neighboring weekday
-         */
-        int dayOfWeek = calculateDayOfWeek(dayOfYear, yearStartDay);
-
-        if (dayOfWeek == 1) {
-            return dayOfYear + 1;
-        }
-        else if (dayOfWeek == 7) {
-            return dayOfYear - 1;
-        }
-        else {
-            return dayOfYear;
-        }
+    public static Days calculateChargeDays(LocalDate checkout, int rentalDays) {
+        return calculateChargeDays(DateConverter.toEpochDay(checkout), rentalDays);
     }
 
     /**
-     * Calculates which day of the year Labor Day falls on
+     * Calculates the number of each type of day in a rental period
      *
-     * @param calendar contains the year in question
-     * @param yearStartDay the day of the week the year starts on
-     * @return the day of the year to observe Labor Day
+     * @param checkoutDay epoch day the tool is checked out
+     * @param rentalDays number of days after checkout to check
+     * @return a Days helper class that contains the number of each type of day
      */
-    private static int calculateLaborDayOfYear(Calendar calendar, int yearStartDay) {
-        /* Determines which day of the year 9/1 will be on to start considering
-           when Labor Day will be observed
-         */
-        int dayOfYear = calendar.get(Calendar.YEAR) % 4 == 0 ? 245 : 244;
-        // Finds the day of week that 9/1 falls on
-        int dayOfWeek = calculateDayOfWeek(dayOfYear, yearStartDay);
-
-        // If 9/1 is a Sunday, Labor Day will fall on the following day
-        if (dayOfWeek == 1) {
-            return dayOfYear + 1;
-        }
-        // If 9/1 is a Monday, it is Labor Day
-        else if (dayOfWeek == 2) {
-            return dayOfYear;
-        }
-        /* Otherwise, Labor Day is the following Monday, so add a week (7),
-           then 2 for the number representing Monday, then subtract the amount
-           corresponding to the day of the week 9/1 falls on
-         */
-        else {
-            return dayOfYear + 9 - dayOfWeek;
-        }
+    public static Days calculateChargeDays(int checkoutDay, int rentalDays) {
+        long start = Metrics.start();
+        ChargeDayCache current = cache;
+        Days days = current != null ? current.get(checkoutDay, rentalDays) :
+                                      CALENDAR.countDays(checkoutDay, rentalDays);
+        Metrics.record(Metrics.Stage.CHARGE_DAYS, start);
+        return days;
     }
 
     /**
-     * Calculates the day of the week the corresponding year starts on
+     * Calculates the number of days to charge in a rental period directly,
+     * without building a Days breakdown
      *
-     * @param calendar containing the desired year
-     * @return int representing the day of the week January 1st is on
+     * @param checkoutDay epoch day the tool is checked out
+     * @param rentalDays number of days after checkout to check
+     * @param toolType type of tool being rented
+     * @return count of the number of days that are to be charged
      */
-    private static int calcYearStartDayOfWeek(Calendar calendar) {
-        /* The notion here is that based on the current day of the year,
-           calculate the mod 7 to represent the offset from the first
-           of January, and use this to find 1/1 day of the week. Need
-           to add 1 since the count starts at 1 and not 0
-         */
-        int startDay = calendar.get(Calendar.DAY_OF_WEEK) + 1 -
-                       calendar.get(Calendar.DAY_OF_YEAR) % 7;
-        // Since % in Java returns remainder need to ensure result is positive
-        return startDay > 0 ? startDay : startDay + 7;
+    public static int calculateDaysToCharge(int checkoutDay, int rentalDays, ToolType toolType) {
+        long start = Metrics.start();
+        ChargeDayCache current = cache;
+        int chargeDays = current != null ?
+                calculateDaysToCharge(current.get(checkoutDay, rentalDays), toolType) :
+                CALENDAR.countChargeDays(checkoutDay, rentalDays, toolType);
+        Metrics.record(Metrics.Stage.CHARGE_DAYS, start);
+        return chargeDays;
     }
 
     /**
-     * Effectively does the reverse operation of the above:
-     * Calculates the day of the week a specific day of the year falls on
+     * Calculates the number of days to charge for every rental length from 1
+     * day up, in one pass rather than one calculation per length
      *
-     * @param dayOfYear day of year for date in question
-     * @param yearStartDay day of the week the year starts on
-     * @return the number corresponding to the day of the week for desired date
+     * @param checkoutDay epoch day the tool is checked out
+     * @param toolType type of tool being rented
+     * @param chargeDays filled so chargeDays[n - 1] is the count for an n day
+     *                   rental, up to its length
      */
-    private static int calculateDayOfWeek(int dayOfYear, int yearStartDay) {
-        int dayInWeek = (dayOfYear - 1) % 7 + yearStartDay;
-        return dayInWeek <= 7 ? dayInWeek : dayInWeek - 7;
+    public static void calculateDaysToCharge(int checkoutDay, ToolType toolType, int[] chargeDays) {
+        long start = Metrics.start();
+        CALENDAR.countChargeDays(checkoutDay, toolType, chargeDays);
+        Metrics.record(Metrics.Stage.CHARGE_DAYS, start);
     }
 
     /**
-     * Calculates the number of each type of day for a partial week
+     * Starts caching the breakdown of rental periods, replacing any existing cache
      *
-     * @param startDay number represnting the day in the week to start on
-     * @param days number of days to count
-     * @return Days object containing the number of each type of day
+     * @param capacity maximum number of rental periods to cache
+     * @return the new cache, to read its statistics from
      */
-    private static Days calculatePartialWeek(int startDay, int days) {
-        int weekdays = 0;
-        int weekends = 0;
+    public static ChargeDayCache enableCache(int capacity) {
+        ChargeDayCache created = createCache(capacity);
+        cache = created;
+        return created;
+    }
 
-        for (int i = 0; i < days; i++) {
-            // add i + 1 since we count last day, but not first
-            // if it is a Sunday or Saturday, increase weekends, otherwise weekdays
-            if ((startDay + i + 1) % 7 == 1 || (startDay + i + 1) % 7 == 0) {
-                weekends++;
-            }
-            else {
-                weekdays++;
-            }
-        }
+    /**
+     * Stops caching the breakdown of rental periods
+     */
+    public static void disableCache() {
+        cache = null;
+    }
+
+    /**
+     * @return the cache in use, or null if caching is disabled
+     */
+    public static ChargeDayCache getCache() {
+        return cache;
+    }
 
-        return new Days(weekdays, weekends, 0);
+    private static ChargeDayCache createCache(int capacity) {
+        return capacity > 0 ? new ChargeDayCache(capacity, CALENDAR) : null;
     }
 
     /**
@@ -230,6 +180,18 @@ public class ChargeDayCalculator {
             this.holidays = holidays;
         }
 
+        public int getWeekdays() {
+            return weekdays;
+        }
+
+        public int getWeekends() {
+            return weekends;
+        }
+
+        public int getHolidays() {
+            return holidays;
+        }
+
         /**
          * Allows for summing of two different objects
          *
@@ -21,17 +21,50 @@ public class Constants {
     public static final String RIDGID = "Ridgid";
     public static final String DEWALT = "DeWalt";
 
+    /* Supported checkout years: one full 400 year Gregorian cycle starting with
+       the first year a 2 digit checkout date can represent */
+    public static final int CALENDAR_FIRST_YEAR = 2000;
+    public static final int CALENDAR_LAST_YEAR = 2399;
+
+    // Longest rental accepted, in days (a little over 2700 years)
+    public static final int MAX_RENTAL_DAYS = 1000000;
+
+    // System property holding the number of entries in the charge day cache (0 disables it)
+    public static final String CHARGE_DAY_CACHE_PROPERTY = "rental.chargeDayCache.size";
+
+    // System property that turns per-stage latency metrics on at startup
+    public static final String METRICS_ENABLED_PROPERTY = "rental.metrics.enabled";
+
+    // System property holding the path of the holiday rule configuration file
+    public static final String HOLIDAYS_FILE_PROPERTY = "rental.holidays.file";
+
+    // System property holding the path of the journal the server records checkouts in
+    public static final String JOURNAL_FILE_PROPERTY = "rental.journal.file";
+
+    // System property holding the path of the inventory snapshot the server loads tools from
+    public static final String INVENTORY_SNAPSHOT_PROPERTY = "rental.inventory.snapshot";
+
     // Error Messages
     public static final String BAD_TOOL_CODE = "Unknown tool code: ";
     public static final String BAD_RENTAL_DAYS =
             "Invalid amount entered for number of rental days";
     public static final String BAD_PERCENT_DISCOUNT = "Malformed percent discount input";
-    public static final String INVALID_DATE_FORMAT = "Please enter date in mm/dd/yy format";
+    public static final String INVALID_DATE_FORMAT =
+            "Please enter date in mm/dd/yy, mm/dd/yyyy or yyyy-mm-dd format";
     public static final String INVALID_MONTH = "Please enter a month in the range 1-12";
     public static final String INVALID_DAY = "Given day does not exist is specified month";
-    public static final String INVALID_YEAR = "Please enter a value between 0-99 for year";
+    public static final String INVALID_YEAR = "Please enter a value between 0-99 for year, " +
+            "or a 4 digit year between " + CALENDAR_FIRST_YEAR + "-" + CALENDAR_LAST_YEAR;
     public static final String INVALID_LEAP_DAY = "2/29 is not a valid day for given year";
     public static final String REPEAT_TOOL_CODE = "Repeat Tool codes are not allowed";
+    public static final String NO_UNITS_AVAILABLE = "No units available to check out: ";
+    public static final String NO_UNITS_CHECKED_OUT = "No units checked out to return: ";
+    public static final String JOURNAL_FAILURE = "Unable to record agreement: ";
+    public static final String COLUMN_STORE_FULL = "Agreement column store is full";
+    public static final String COLUMN_STORE_GROUPS =
+            "Too many tool type and brand pairs for the agreement column store, the limit is ";
+    public static final String BAD_SNAPSHOT = "Invalid inventory snapshot: ";
+    public static final String BAD_HOLIDAY_RULE = "Invalid holiday configuration: ";
 
     private Constants() {
         // Utility class, should not be instantiated
@@ -1,103 +1,383 @@
 package com.rental.util;
 
+import java.time.LocalDate;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 
 /**
- * Utility class responsible for converting dates in string format to Java
- * Calender class objects to do actual logic on
+ * Utility class responsible for converting dates in string format to epoch
+ * days (the number of days since 1/1/1970) to do actual logic on, and back.
+ * Dates may be given as mm/dd/yy, mm/dd/yyyy or ISO yyyy-mm-dd.
+ *
+ * Everything is worked out on plain int epoch days. LocalDate and Calendar
+ * are only converted to and from at the edges, by the adapters at the end;
+ * the Calendar ones are kept for older callers, since building a Calendar
+ * looks up the default time zone and locale.
  */
 public class DateConverter {
     // Store the number of days in each month of the standard year
     private static int[] daysInMonth = new int[]{31,28,31,30,31,30,31,31,30,31,30,31};
 
+    /* Error codes returned by parseEpochDay. Every supported date is after
+       1/1/1970, so valid results are never negative
+     */
+    public static final int INVALID_DATE_FORMAT = -1;
+    public static final int INVALID_MONTH = -2;
+    public static final int INVALID_DAY = -3;
+    public static final int INVALID_YEAR = -4;
+    public static final int INVALID_LEAP_DAY = -5;
+
+    // Date styles, used to format a date the same way another one was given
+    public static final int STYLE_SHORT = 0; // m/d/yy, years 2000-2009 as 00-09
+    public static final int STYLE_LONG = 1; // m/d/yyyy
+    public static final int STYLE_ISO = 2; // yyyy-mm-dd
+
     /**
-     * Creates a Calender object from the specified mm/dd/yy formatting
+     * Converts a date String to an epoch day, throwing if the date is invalid
      *
-     * @param dateString date as a String of the mm/dd/yy form
-     * @return Calender with the specified date
+     * @param dateString date as a String of the mm/dd/yy, mm/dd/yyyy or yyyy-mm-dd form
+     * @return number of days since 1/1/1970
      */
-    public static Calendar createCalenderFromString(String dateString) {
-        try {
-            String[] tokens = dateString.split("/");
+    public static int toEpochDay(String dateString) {
+        int epochDay = parseEpochDay(dateString);
+        if (isParseError(epochDay)) {
+            System.out.println(getParseErrorMessage(epochDay));
+            throw new RuntimeException(getParseErrorMessage(epochDay));
+        }
+        return epochDay;
+    }
 
-            if (tokens.length != 3) {
-                throw new RuntimeException(Constants.INVALID_DATE_FORMAT);
-            }
+    /**
+     * Parses a date in a single pass over its characters without allocating,
+     * reporting invalid input through an error code rather than an exception.
+     * Two digit years are in the 2000s, four digit years must fall within the
+     * supported calendar.
+     *
+     * @param date date of the mm/dd/yy, mm/dd/yyyy or yyyy-mm-dd form
+     * @return number of days since 1/1/1970, or one of the (negative) error codes
+     */
+    public static int parseEpochDay(CharSequence date) {
+        long start = Metrics.start();
+        int result = parse(date);
+        Metrics.record(Metrics.Stage.DATE_PARSING, start);
+        return result;
+    }
 
-            int month = Integer.parseInt(tokens[0]) - 1; // Calender uses 0-11 for months
-            if (month < 0 || month > 11) {
-                throw new RuntimeException(Constants.INVALID_MONTH);
+    private static int parse(CharSequence date) {
+        int length = date.length();
+        // Leading number is the month, or the year in the ISO form
+        int first = readNumber(date, 0);
+        if (first < 0 || end(first) == length) {
+            return INVALID_DATE_FORMAT;
+        }
+        char separator = date.charAt(end(first));
+        int second = readNumber(date, end(first) + 1);
+        if (second < 0 || end(second) == length || date.charAt(end(second)) != separator) {
+            return INVALID_DATE_FORMAT;
+        }
+        int third = readNumber(date, end(second) + 1);
+        if (third < 0 || end(third) != length) {
+            return INVALID_DATE_FORMAT;
+        }
+
+        // Digits in each number, from where it ended and the separator before it
+        int firstDigits = end(first);
+        int secondDigits = end(second) - firstDigits - 1;
+        int thirdDigits = length - end(second) - 1;
+
+        int year;
+        int month;
+        int day;
+        int yearDigits;
+        if (separator == '/' && firstDigits <= 2 && secondDigits <= 2) {
+            month = value(first);
+            day = value(second);
+            year = value(third);
+            yearDigits = thirdDigits;
+        }
+        else if (separator == '-' && firstDigits == 4 && secondDigits <= 2 && thirdDigits <= 2) {
+            year = value(first);
+            yearDigits = firstDigits;
+            month = value(second);
+            day = value(third);
+        }
+        else {
+            return INVALID_DATE_FORMAT;
+        }
+
+        if (month < 1 || month > 12) {
+            return INVALID_MONTH;
+        }
+        if (yearDigits == 2) {
+            // 2 digit years are assumed to be in the 2000s
+            year += 2000;
+        }
+        else if (yearDigits != 4 ||
+                 year < Constants.CALENDAR_FIRST_YEAR || year > Constants.CALENDAR_LAST_YEAR) {
+            return INVALID_YEAR;
+        }
+        if (month == 2 && day == 29) { //special if leap day is start date
+            if (!isLeapYear(year)) {
+                return INVALID_LEAP_DAY;
             }
+        }
+        // Otherwise, ensure day exists in given month
+        else if (day < 1 || day > daysInMonth[month - 1]) {
+            return INVALID_DAY;
+        }
+        return toEpochDay(year, month, day);
+    }
 
-            int day = Integer.parseInt(tokens[1]);
-            /* assuming we only care about the years 2000-2099, since only supporting
-               2 digit years, so appending "20" to start of year */
-            int year = Integer.parseInt("20" + tokens[2]);
+    /**
+     * @param result value returned by parseEpochDay
+     * @return true if the value is an error code rather than a date
+     */
+    public static boolean isParseError(int result) {
+        return result < 0;
+    }
+
+    /**
+     * @param error error code returned by parseEpochDay
+     * @return message describing the error to the user
+     */
+    public static String getParseErrorMessage(int error) {
+        switch (error) {
+            case INVALID_MONTH: return Constants.INVALID_MONTH;
+            case INVALID_DAY: return Constants.INVALID_DAY;
+            case INVALID_YEAR: return Constants.INVALID_YEAR;
+            case INVALID_LEAP_DAY: return Constants.INVALID_LEAP_DAY;
+            default: return Constants.INVALID_DATE_FORMAT;
+        }
+    }
 
-            if (month == 1 && day == 29) { //special if leap day is start date
-                if (year % 4 != 0) {
-                    throw new RuntimeException(Constants.INVALID_LEAP_DAY);
-                }
+    /**
+     * Determines which of the supported forms a (valid) date was given in
+     *
+     * @param date date of the mm/dd/yy, mm/dd/yyyy or yyyy-mm-dd form
+     * @return one of the STYLE constants
+     */
+    public static int dateStyle(CharSequence date) {
+        int length = date.length();
+        if (length > 4 && date.charAt(4) == '-') {
+            return STYLE_ISO;
+        }
+        // Otherwise the year follows the last separator
+        int yearStart = length;
+        while (yearStart > 0 && date.charAt(yearStart - 1) != '/') {
+            yearStart--;
+        }
+        return length - yearStart == 4 ? STYLE_LONG : STYLE_SHORT;
+    }
+
+    /* Numbers are read into a single int to avoid allocating:
+       the low 16 bits hold the value (at most 4 digits) and the rest the index
+       just past the last digit. Negative if there are no digits or too many
+     */
+    private static int readNumber(CharSequence date, int start) {
+        int position = start;
+        int value = 0;
+        while (position < date.length() && position - start < 5) {
+            char c = date.charAt(position);
+            if (c < '0' || c > '9') {
+                break;
             }
-            // Otherwise, ensure day exists in given month
-            else if (day > daysInMonth[month]) {
-                throw new RuntimeException(Constants.INVALID_DAY);
+            value = value * 10 + (c - '0');
+            position++;
+        }
+        int digits = position - start;
+        return digits == 0 || digits > 4 ? -1 : position << 16 | value;
+    }
+
+    private static int value(int number) {
+        return number & 0xFFFF;
+    }
+
+    private static int end(int number) {
+        return number >>> 16;
+    }
+
+    /**
+     * Formats an epoch day in the same m/d/yy form the checkout date is given in
+     *
+     * @param epochDay number of days since 1/1/1970
+     * @return date in mm/dd/yy string form
+     */
+    public static String formatDate(int epochDay) {
+        return formatDate(epochDay, STYLE_SHORT);
+    }
+
+    /**
+     * Formats an epoch day in one of the supported forms. The 2 digit year is
+     * always 2 digits (1/5/05, not 1/5/5), so it reads back as the same date.
+     * Dates outside the 2000s can't be written with a 2 digit year, so they
+     * use the mm/dd/yyyy form instead of mm/dd/yy (3/1/2100, not 3/1/100).
+     *
+     * @param epochDay number of days since 1/1/1970
+     * @param style one of the STYLE constants
+     * @return date as a String in the given form
+     */
+    public static String formatDate(int epochDay, int style) {
+        int yearMonthDay = toYearMonthDay(epochDay);
+        int year = yearMonthDay / 10000;
+        int month = yearMonthDay / 100 % 100;
+        int day = yearMonthDay % 100;
+        StringBuilder date = new StringBuilder(10);
+        if (style == STYLE_ISO) {
+            date.append(year).append('-');
+            if (month < 10) {
+                date.append('0');
             }
-            else if (year < 2000 || year > 2100) {
-                throw new RuntimeException(Constants.INVALID_YEAR);
+            date.append(month).append('-');
+            if (day < 10) {
+                date.append('0');
             }
-
-            return new GregorianCalendar(year, month, day);
+            return date.append(day).toString();
         }
-        catch (RuntimeException e) {
-            System.out.println(e.getMessage());
-            throw e;
+        date.append(month).append('/').append(day).append('/');
+        if (style == STYLE_SHORT && year >= 2000 && year <= 2099) {
+            if (year < 2010) {
+                date.append('0');
+            }
+            return date.append(year - 2000).toString();
         }
+        return date.append(year).toString();
     }
 
     /**
+     * Converts a date to the number of days since 1/1/1970 in constant time.
+     * Years are shifted to start in March so Leap Day is the last day of the
+     * year, then whole 400 year cycles (146097 days each) are counted separately
+     * from the years, months and days remaining in the current cycle.
      *
+     * @param year full year (e.g. 2015)
+     * @param month month of the year in the range 1-12
+     * @param day day of the month
+     * @return number of days since 1/1/1970
+     */
+    public static int toEpochDay(int year, int month, int day) {
+        int marchYear = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(marchYear, 400);
+        int yearOfEra = marchYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Reverse of the above: converts an epoch day back to its date
      *
-     * @param calender Calender corresponding to current year and start date
-     * @param daysToAdd number of days that still need to be incremented
+     * @param epochDay number of days since 1/1/1970
+     * @return the date packed as a single int in yyyymmdd form
+     */
+    public static int toYearMonthDay(int epochDay) {
+        int shifted = epochDay + 719468; // days since 3/1/0000
+        int era = Math.floorDiv(shifted, 146097);
+        int dayOfEra = shifted - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153; // 0 is March
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * Calculates the day of the week an epoch day falls on
+     *
+     * @param epochDay number of days since 1/1/1970
+     * @return day of the week (1-Sunday ... 7-Saturday)
+     */
+    public static int dayOfWeek(int epochDay) {
+        // 1/1/1970 was a Thursday (5)
+        return Math.floorMod(epochDay + 4, 7) + 1;
+    }
+
+    /**
+     * Determines if the given year contains Leap Day under the Gregorian rules
+     *
+     * @param year the year in question
+     * @return true if February has 29 days in the year
+     */
+    public static boolean isLeapYear(int year) {
+        return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * @param date date in question
+     * @return number of days since 1/1/1970
+     */
+    public static int toEpochDay(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    /**
+     * @param epochDay number of days since 1/1/1970
+     * @return the date as a LocalDate
+     */
+    public static LocalDate toLocalDate(int epochDay) {
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Finds the date a rental is due back and formats it as a String
+     *
+     * @param checkout the start date
+     * @param daysToAdd number of days from the start date until the return date
      * @return Specified end of rental date in mm/dd/yy string form
      */
-    public static String getReturnDate(Calendar calender, int daysToAdd) {
-        int month = calender.get(Calendar.MONTH);
-        int day = calender.get(Calendar.DAY_OF_MONTH);
-        int year = calender.get(Calendar.YEAR);
+    public static String getReturnDate(LocalDate checkout, int daysToAdd) {
+        return formatDate(toEpochDay(checkout) + daysToAdd);
+    }
 
-        // Loop checks if date falls after current month
-        while (daysToAdd >= getDaysLeftInMonth(day, month, year)) {
-            daysToAdd -= getDaysLeftInMonth(day, month, year);
-            day = 0; // if we are incrementing the month, start day is the first
-            month++;
-        }
+    /**
+     * Converts the date held by a Calendar to an epoch day. Compatibility
+     * adapter for Calendar callers, prefer epoch days or LocalDate.
+     *
+     * @param calendar Calendar containing the date in question
+     * @return number of days since 1/1/1970
+     */
+    public static int toEpochDay(Calendar calendar) {
+        return toEpochDay(calendar.get(Calendar.YEAR),
+                          calendar.get(Calendar.MONTH) + 1, // Calender uses 0-11 for months
+                          calendar.get(Calendar.DAY_OF_MONTH));
+    }
 
-        return new StringBuilder()
-                .append(month + 1)
-                .append("/")
-                .append(day + daysToAdd)
-                .append("/")
-                .append(year - 2000)
-                .toString();
+    /**
+     * Creates a Calendar at midnight of an epoch day, in the default time
+     * zone. Compatibility adapter for Calendar callers.
+     *
+     * @param epochDay number of days since 1/1/1970
+     * @return new Calendar holding the date
+     */
+    public static Calendar toCalendar(int epochDay) {
+        int yearMonthDay = toYearMonthDay(epochDay);
+        return new GregorianCalendar(yearMonthDay / 10000,
+                                     yearMonthDay / 100 % 100 - 1, // Calender uses 0-11 for months
+                                     yearMonthDay % 100);
     }
 
     /**
-     * Determines how many days are left in the month
+     * Creates a Calender object from the specified date. Compatibility
+     * adapter for Calendar callers, prefer parseEpochDay.
      *
-     * @param day day of the month currently on
-     * @param month the month in question
-     * @param year the year in question (only matters for Leap Day)
-     * @return number of days left in the month
-     */
-    private static int getDaysLeftInMonth(int day, int month, int year) {
-        int daysInMonth = month != 2 ? DateConverter.daysInMonth[month] :
-                year % 4 == 0 ? 29 : 28;
-        return daysInMonth - day;
-        /*return month != 2 ? daysInMonth[month] :
-            year % 4 == 0 ? 29 : 28;*/
+     * @param dateString date as a String of the mm/dd/yy, mm/dd/yyyy or yyyy-mm-dd form
+     * @return Calender with the specified date
+     */
+    public static Calendar createCalenderFromString(String dateString) {
+        return toCalendar(toEpochDay(dateString));
+    }
+
+    /**
+     * Finds the date a rental is due back and formats it as a String.
+     * Compatibility adapter for Calendar callers.
+     *
+     * @param calender Calender corresponding to the start date
+     * @param daysToAdd number of days from the start date until the return date
+     * @return Specified end of rental date in mm/dd/yy string form
+     */
+    public static String getReturnDate(Calendar calender, int daysToAdd) {
+        return formatDate(toEpochDay(calender) + daysToAdd);
     }
 
     private DateConverter() {
@@ -0,0 +1,250 @@
+package com.rental.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Set of rules deciding which days the store observes as holidays. Rules are
+ * either a fixed date (optionally moved to the nearest weekday when it falls on
+ * a weekend) or the nth (or last) given weekday of a month.
+ *
+ * Rules are loaded from configuration with one rule per line:
+ * <pre>
+ * # name: fixed month day [observed]
+ * Independence Day: fixed 7 4 observed
+ * # name: nth month weekday (1-4 or last)
+ * Labor Day: nth 9 MONDAY 1
+ * Memorial Day: nth 5 MONDAY last
+ * </pre>
+ * A year's rules are compiled into a sorted index of the days observed, which
+ * ChargeCalendar folds into its precomputed table, so the number of holidays
+ * has no effect on the cost of a quote.
+ */
+public class HolidayCalendar {
+    // Holidays observed when no configuration is given
+    private static final String DEFAULT_RULES =
+            "Independence Day: fixed 7 4 observed\n" +
+            "Labor Day: nth 9 MONDAY 1\n";
+    // Longest month lengths that occur every year, so fixed dates always exist
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final String[] DAY_NAMES = {"SUNDAY", "MONDAY", "TUESDAY", "WEDNESDAY",
+                                               "THURSDAY", "FRIDAY", "SATURDAY"};
+
+    private final List<Rule> rules;
+
+    public HolidayCalendar(List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    /**
+     * Loads the rules from the file named by the holiday system property, or
+     * falls back to Independence Day (observed) and Labor Day
+     *
+     * @return calendar of the store's holidays
+     */
+    public static HolidayCalendar defaultCalendar() {
+        String file = System.getProperty(Constants.HOLIDAYS_FILE_PROPERTY);
+        try {
+            if (file != null) {
+                return load(Paths.get(file));
+            }
+            return parse(new BufferedReader(new StringReader(DEFAULT_RULES)));
+        }
+        catch (IOException e) {
+            throw new RuntimeException(Constants.BAD_HOLIDAY_RULE + file, e);
+        }
+    }
+
+    /**
+     * @param file configuration file with one rule per line
+     * @return calendar of the configured holidays
+     * @throws IOException if the file can't be read
+     */
+    public static HolidayCalendar load(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Reads one rule per line, skipping blank lines and # comments
+     *
+     * @param reader source of the configuration
+     * @return calendar of the configured holidays
+     * @throws IOException if the configuration can't be read
+     */
+    public static HolidayCalendar parse(BufferedReader reader) throws IOException {
+        List<Rule> rules = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                rules.add(parseRule(line));
+            }
+            catch (RuntimeException e) {
+                throw new IllegalArgumentException(
+                        Constants.BAD_HOLIDAY_RULE + "line " + lineNumber + ": " + line, e);
+            }
+        }
+        return new HolidayCalendar(rules);
+    }
+
+    private static Rule parseRule(String line) {
+        int colon = line.indexOf(':');
+        String name = colon < 0 ? "" : line.substring(0, colon).trim();
+        String[] tokens = line.substring(colon + 1).trim().split("\\s+");
+        if (tokens[0].equalsIgnoreCase("fixed") && (tokens.length == 3 || tokens.length == 4)) {
+            boolean observed = tokens.length == 4;
+            if (observed && !tokens[3].equalsIgnoreCase("observed")) {
+                throw new IllegalArgumentException(tokens[3]);
+            }
+            return new FixedDateRule(name, Integer.parseInt(tokens[1]),
+                                     Integer.parseInt(tokens[2]), observed);
+        }
+        else if (tokens[0].equalsIgnoreCase("nth") && tokens.length == 4) {
+            int dayOfWeek = Arrays.asList(DAY_NAMES).indexOf(tokens[2].toUpperCase(Locale.ROOT)) + 1;
+            int nth = tokens[3].equalsIgnoreCase("last") ? NthWeekdayRule.LAST :
+                      Integer.parseInt(tokens[3]);
+            return new NthWeekdayRule(name, Integer.parseInt(tokens[1]), dayOfWeek, nth);
+        }
+        throw new IllegalArgumentException(line);
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Compiles the rules for a year into the days they are observed on
+     *
+     * @param year the year in question
+     * @return sorted epoch days of the year's holidays, without duplicates
+     *         (an observed holiday may move into a neighboring year)
+     */
+    public int[] compile(int year) {
+        int[] days = new int[rules.size()];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = rules.get(i).observedDay(year);
+        }
+        Arrays.sort(days);
+        int unique = 0;
+        for (int i = 0; i < days.length; i++) {
+            if (i == 0 || days[i] != days[unique - 1]) {
+                days[unique++] = days[i];
+            }
+        }
+        return Arrays.copyOf(days, unique);
+    }
+
+    /**
+     * A single holiday
+     */
+    public interface Rule {
+        String getName();
+
+        /**
+         * @param year the year in question
+         * @return epoch day the holiday is observed on in that year
+         */
+        int observedDay(int year);
+    }
+
+    /**
+     * Holiday on the same date every year. If observed, a Saturday holiday is
+     * taken the Friday before and a Sunday holiday the Monday after.
+     */
+    public static class FixedDateRule implements Rule {
+        private final String name;
+        private final int month;
+        private final int day;
+        private final boolean observed;
+
+        public FixedDateRule(String name, int month, int day, boolean observed) {
+            if (month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month - 1]) {
+                throw new IllegalArgumentException(month + "/" + day);
+            }
+            this.name = name;
+            this.month = month;
+            this.day = day;
+            this.observed = observed;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int observedDay(int year) {
+            int date = DateConverter.toEpochDay(year, month, day);
+            if (observed) {
+                int dayOfWeek = DateConverter.dayOfWeek(date);
+                if (dayOfWeek == 1) {
+                    return date + 1;
+                }
+                else if (dayOfWeek == 7) {
+                    return date - 1;
+                }
+            }
+            return date;
+        }
+    }
+
+    /**
+     * Holiday on the nth (or last) occurrence of a weekday in a month, such as
+     * Labor Day on the first Monday in September
+     */
+    public static class NthWeekdayRule implements Rule {
+        public static final int LAST = -1;
+
+        private final String name;
+        private final int month;
+        private final int dayOfWeek; // 1-Sunday ... 7-Saturday
+        private final int nth; // 1-4, or LAST
+
+        public NthWeekdayRule(String name, int month, int dayOfWeek, int nth) {
+            if (month < 1 || month > 12 || dayOfWeek < 1 || dayOfWeek > 7 ||
+                (nth != LAST && (nth < 1 || nth > 4))) {
+                throw new IllegalArgumentException(month + " " + dayOfWeek + " " + nth);
+            }
+            this.name = name;
+            this.month = month;
+            this.dayOfWeek = dayOfWeek;
+            this.nth = nth;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int observedDay(int year) {
+            if (nth == LAST) {
+                // Step back from the first of the next month to the weekday
+                int nextMonth = month == 12 ? DateConverter.toEpochDay(year + 1, 1, 1) :
+                                DateConverter.toEpochDay(year, month + 1, 1);
+                int lastDay = nextMonth - 1;
+                return lastDay - Math.floorMod(DateConverter.dayOfWeek(lastDay) - dayOfWeek, 7);
+            }
+            int first = DateConverter.toEpochDay(year, month, 1);
+            return first + Math.floorMod(dayOfWeek - DateConverter.dayOfWeek(first), 7) +
+                   7 * (nth - 1);
+        }
+    }
+}
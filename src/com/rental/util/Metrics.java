@@ -0,0 +1,296 @@
+package com.rental.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms for each stage of pricing a quote, exported over JMX.
+ * Instrumented code brackets a stage with
+ * <pre>
+ *   long start = Metrics.start();
+ *   ...
+ *   Metrics.record(Metrics.Stage.CHARGE_DAYS, start);
+ * </pre>
+ * While metrics are disabled start returns 0 without reading the clock and
+ * record returns straight away, so the cost is a volatile read and a branch.
+ * Recording is lock-free. Stages may nest (validation includes date parsing,
+ * money math includes counting charge days), so their times don't add up to
+ * the time of a quote.
+ *
+ * Metrics start disabled unless the rental.metrics.enabled property is true,
+ * and can be switched at runtime through setEnabled or the JMX control bean.
+ */
+public class Metrics {
+    private static final String DOMAIN = "com.rental";
+
+    /**
+     * Stages of pricing a quote that are timed
+     */
+    public enum Stage {
+        VALIDATION, // RentalAgreementFactory checking and parsing input
+        DATE_PARSING, // DateConverter parsing a checkout date
+        CHARGE_DAYS, // ChargeDayCalculator counting days to charge
+        MONEY, // RentalAgreement calculating a charge
+        RENDERING; // an agreement being written as text
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+    }
+
+    private static volatile boolean enabled = Boolean.getBoolean(Constants.METRICS_ENABLED_PROPERTY);
+
+    private Metrics() {
+        // Utility class, should not be instantiated
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * @return the start time of a stage, or 0 if metrics are disabled
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a stage as having run from the given start time until now
+     *
+     * @param stage stage that finished
+     * @param start value returned by start when the stage began
+     */
+    public static void record(Stage stage, long start) {
+        if (start != 0) {
+            stage.histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Registers a bean for each stage (com.rental:type=QuoteMetrics,stage=...)
+     * and one to switch metrics on and off (com.rental:type=QuoteMetrics,name=Control)
+     * with the platform MBean server. Registering again has no effect.
+     */
+    public static synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName control = new ObjectName(DOMAIN + ":type=QuoteMetrics,name=Control");
+            if (server.isRegistered(control)) {
+                return;
+            }
+            server.registerMBean(new Control(), control);
+            for (Stage stage : Stage.values()) {
+                server.registerMBean(new StageStats(stage),
+                                     new ObjectName(DOMAIN + ":type=QuoteMetrics,stage=" + stage));
+            }
+        }
+        catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Lock-free histogram of latencies in nanoseconds. Buckets are log-linear:
+     * each power of two is split into 16 equal buckets, so any recorded value is
+     * reported within about 6% while the whole range of a long fits in 960
+     * counters.
+     */
+    public static class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /**
+         * @param nanos latency to record (negative values count as 0)
+         */
+        public void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            counts.incrementAndGet(bucket(value));
+            count.increment();
+            total.add(value);
+            max.accumulate(value);
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * @return the highest value counted in a bucket
+         */
+        static long highestValue(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+            return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getMean() {
+            long recorded = count.sum();
+            return recorded == 0 ? 0 : total.sum() / (double) recorded;
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param fraction fraction of recorded values (0-1) at or below the result
+         * @return the latency at that percentile, rounded up to its bucket's
+         *         highest value, or 0 if nothing has been recorded
+         */
+        public long getPercentile(double fraction) {
+            long[] snapshot = new long[BUCKETS];
+            long recorded = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                recorded += snapshot[i];
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * recorded));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), getMax());
+                }
+            }
+            return 0;
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+            count.reset();
+            total.reset();
+            max.reset();
+        }
+    }
+
+    /**
+     * JMX view of one stage's histogram
+     */
+    public interface StageStatsMXBean {
+        long getCount();
+
+        double getMeanNanos();
+
+        long getMaxNanos();
+
+        long getP50Nanos();
+
+        long getP90Nanos();
+
+        long getP99Nanos();
+
+        long getP999Nanos();
+
+        void reset();
+    }
+
+    /**
+     * JMX switch for recording metrics
+     */
+    public interface ControlMXBean {
+        boolean isEnabled();
+
+        void setEnabled(boolean enabled);
+
+        void resetAll();
+    }
+
+    private static class StageStats implements StageStatsMXBean {
+        private final LatencyHistogram histogram;
+
+        StageStats(Stage stage) {
+            histogram = stage.histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getMeanNanos() {
+            return histogram.getMean();
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return histogram.getMax();
+        }
+
+        @Override
+        public long getP50Nanos() {
+            return histogram.getPercentile(0.50);
+        }
+
+        @Override
+        public long getP90Nanos() {
+            return histogram.getPercentile(0.90);
+        }
+
+        @Override
+        public long getP99Nanos() {
+            return histogram.getPercentile(0.99);
+        }
+
+        @Override
+        public long getP999Nanos() {
+            return histogram.getPercentile(0.999);
+        }
+
+        @Override
+        public void reset() {
+            histogram.reset();
+        }
+    }
+
+    private static class Control implements ControlMXBean {
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        @Override
+        public void resetAll() {
+            for (Stage stage : Stage.values()) {
+                stage.histogram.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.rental.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Utility class for the pricing arithmetic. Amounts are whole numbers of cents
+ * held in a long and discounts are basis points (hundredths of a percent), so
+ * pricing is done entirely on primitives. BigDecimal is only used to hand
+ * amounts to callers.
+ */
+public class Money {
+    public static final int BASIS_POINTS_PER_PERCENT = 100;
+    private static final int BASIS_POINTS_PER_WHOLE = 10000;
+
+    /**
+     * Calculates the amount taken off a charge by a discount, rounding half a
+     * cent up, exactly as BigDecimal's HALF_UP rounding of the product would
+     *
+     * @param chargeCents charge before the discount, in cents (never negative)
+     * @param discountBasisPoints discount in hundredths of a percent
+     * @return discount amount in cents
+     */
+    public static long discountCents(long chargeCents, int discountBasisPoints) {
+        return (chargeCents * discountBasisPoints + BASIS_POINTS_PER_WHOLE / 2) /
+               BASIS_POINTS_PER_WHOLE;
+    }
+
+    /**
+     * @param cents amount in cents
+     * @return the amount in dollars, with 2 decimal places
+     */
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private Money() {
+        // Utility class, should not be instantiated
+    }
+}
@@ -0,0 +1,278 @@
+package com.rental.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Map from tool code to value, specialized for short ASCII codes like LADW.
+ * Codes of 1-8 ASCII characters are packed into a long (first character in the
+ * highest byte) and kept in an open-addressing table of primitive keys with
+ * linear probing, so a lookup hashes no String, follows no entry nodes and can
+ * be made straight from a CharSequence or the bytes of a buffer. Each code
+ * costs about 24 bytes of table instead of a HashMap node plus its String.
+ * Codes that can't be packed are kept in an ordinary overflow map.
+ *
+ * Lookups are lock-free; updates lock the index. A slot's value is published
+ * before its key, and a key is never cleared once set (removing a code only
+ * clears its value), so a reader probing the table while a writer updates it
+ * sees either the old or the new state of each slot. When the table fills up a
+ * copy without the removed codes is built and published through a volatile
+ * field: the same size if most codes in it were removed, otherwise twice the
+ * size, so the table tracks the number of live codes rather than every code
+ * ever added.
+ *
+ * @param <V> type of value stored for each code
+ */
+public class ToolCodeIndex<V> {
+    private static final int MAX_PACKED_LENGTH = 8;
+    private static final int MIN_CAPACITY = 16;
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final ConcurrentMap<String, V> overflow = new ConcurrentHashMap<>();
+    private volatile Table table = new Table(MIN_CAPACITY);
+    private volatile int size; // codes with a value, packed or not (guarded by this)
+
+    /**
+     * Packs a tool code of 1-8 ASCII characters into a long, first character in
+     * the highest byte and zero padded, so packed codes sort (unsigned) the same
+     * as the codes themselves
+     *
+     * @param toolCode code to pack
+     * @return the packed code, or 0 if the code can't be packed
+     */
+    public static long pack(CharSequence toolCode) {
+        int length = toolCode.length();
+        if (length == 0 || length > MAX_PACKED_LENGTH) {
+            return 0;
+        }
+        long packed = 0;
+        for (int i = 0; i < length; i++) {
+            char c = toolCode.charAt(i);
+            if (c == 0 || c > 0x7f) {
+                return 0;
+            }
+            packed = packed << 8 | c;
+        }
+        return packed << (8 * (MAX_PACKED_LENGTH - length));
+    }
+
+    /**
+     * Packs a tool code held as ASCII bytes in a buffer, the same as pack(CharSequence)
+     *
+     * @param buffer buffer holding the code (its position is left untouched)
+     * @param offset index of the code's first byte
+     * @param length number of bytes in the code
+     * @return the packed code, or 0 if the code can't be packed
+     */
+    public static long pack(ByteBuffer buffer, int offset, int length) {
+        if (length == 0 || length > MAX_PACKED_LENGTH) {
+            return 0;
+        }
+        long packed = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(offset + i);
+            if (b <= 0) {
+                return 0;
+            }
+            packed = packed << 8 | b;
+        }
+        return packed << (8 * (MAX_PACKED_LENGTH - length));
+    }
+
+    /**
+     * @param toolCode code to look up
+     * @return value stored for the code, or null if there isn't one
+     */
+    public V get(CharSequence toolCode) {
+        long key = pack(toolCode);
+        return key != 0 ? get(key) : overflow.get(toolCode.toString());
+    }
+
+    /**
+     * @param buffer buffer holding the code as ASCII bytes
+     * @param offset index of the code's first byte
+     * @param length number of bytes in the code
+     * @return value stored for the code, or null if there isn't one
+     */
+    public V get(ByteBuffer buffer, int offset, int length) {
+        long key = pack(buffer, offset, length);
+        if (key != 0) {
+            return get(key);
+        }
+        byte[] bytes = new byte[length];
+        buffer.duplicate().position(offset).get(bytes);
+        return overflow.get(new String(bytes, StandardCharsets.ISO_8859_1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private V get(long key) {
+        Table current = table;
+        for (int slot = current.slot(key); ; slot = (slot + 1) & current.mask) {
+            long found = (long) KEYS.getAcquire(current.keys, slot);
+            if (found == key) {
+                return (V) VALUES.getAcquire(current.values, slot);
+            }
+            if (found == 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @param toolCode code to store a value for
+     * @param value value to store
+     * @return the value already stored for the code (leaving it in place), or
+     *         null if the given value was stored
+     */
+    public synchronized V putIfAbsent(String toolCode, V value) {
+        V existing = get(toolCode);
+        if (existing == null) {
+            set(toolCode, value);
+            size++;
+        }
+        return existing;
+    }
+
+    /**
+     * @param toolCode code whose value to replace
+     * @param expected value (by equals) that must currently be stored
+     * @param value value to store instead
+     * @return whether the value was replaced
+     */
+    public synchronized boolean replace(String toolCode, V expected, V value) {
+        if (expected == null || !expected.equals(get(toolCode))) {
+            return false;
+        }
+        set(toolCode, value);
+        return true;
+    }
+
+    /**
+     * @param toolCode code whose value to remove
+     * @param expected value (by equals) that must currently be stored
+     * @return whether the value was removed
+     */
+    public synchronized boolean remove(String toolCode, V expected) {
+        if (expected == null || !expected.equals(get(toolCode))) {
+            return false;
+        }
+        set(toolCode, null);
+        size--;
+        return true;
+    }
+
+    /**
+     * @return number of codes with a value
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Stores (or clears) a code's value, while holding the lock
+     */
+    private void set(String toolCode, V value) {
+        long key = pack(toolCode);
+        if (key == 0) {
+            if (value == null) {
+                overflow.remove(toolCode);
+            }
+            else {
+                overflow.put(toolCode, value);
+            }
+            return;
+        }
+        Table current = table;
+        int slot = current.slot(key);
+        while (current.keys[slot] != 0 && current.keys[slot] != key) {
+            slot = (slot + 1) & current.mask;
+        }
+        if (current.keys[slot] == key) {
+            VALUES.setRelease(current.values, slot, value);
+            return;
+        }
+        if (value == null) {
+            return;
+        }
+        if (2 * (current.used + 1) > current.keys.length) {
+            // Removed codes hold on to their slots until a rehash drops them, so
+            // the table only doubles if it is mostly full of live codes
+            int capacity = 4 * current.live() < current.keys.length ? current.keys.length :
+                           current.keys.length * 2;
+            table = current = current.rehash(capacity);
+            slot = current.slot(key);
+            while (current.keys[slot] != 0) {
+                slot = (slot + 1) & current.mask;
+            }
+        }
+        // The value must be visible before a reader can find the key
+        VALUES.setRelease(current.values, slot, value);
+        KEYS.setRelease(current.keys, slot, key);
+        current.used++;
+    }
+
+    /**
+     * One generation of the open-addressing table, kept at most half full
+     */
+    private static final class Table {
+        final long[] keys; // 0 marks an empty slot
+        final Object[] values; // null if the code was removed
+        final int mask;
+        final int shift;
+        int used; // slots with a key (guarded by the index's lock)
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+            shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        /**
+         * Fibonacci hashing spreads codes that differ only in their last
+         * characters (the low bytes) across the whole table
+         */
+        int slot(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+        }
+
+        /**
+         * @return number of slots whose code still has a value
+         */
+        int live() {
+            int live = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0 && values[i] != null) {
+                    live++;
+                }
+            }
+            return live;
+        }
+
+        /**
+         * Copies every code that still has a value into a new table
+         *
+         * @param capacity slots in the new table, a power of 2
+         */
+        Table rehash(int capacity) {
+            Table copy = new Table(capacity);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0 && values[i] != null) {
+                    int slot = copy.slot(keys[i]);
+                    while (copy.keys[slot] != 0) {
+                        slot = (slot + 1) & copy.mask;
+                    }
+                    copy.keys[slot] = keys[i];
+                    copy.values[slot] = values[i];
+                    copy.used++;
+                }
+            }
+            return copy;
+        }
+    }
+}